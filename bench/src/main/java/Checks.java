@@ -0,0 +1,370 @@
+/**
+ * Consistency checks for the game's less obvious code paths
+ * Each check runs an optimised code path over many (mostly random) cases and compares the result
+ * 	with a simple reference version, reporting the first case which differs.
+ * Usage: java Checks [check name filter]
+ * 	(Exits with status 1 if any check fails.)
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class Checks {
+
+	private final static long SEED = 42;
+
+	/*
+	 *  A check: returns null if it passes, or a description of the first difference found
+	 */
+	private interface Check {
+		String run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		String filter = (args.length > 0) ? args[0] : "";
+		String[] names = {"mapCopyOnWrite", "levelFileReplace", "flowFieldRepair", "staleEntityHandles",
+				"battleInOneStep"};
+		Check[] checks = {Checks::mapCopyOnWrite, Checks::levelFileReplace, Checks::flowFieldRepair,
+				Checks::staleEntityHandles, Checks::battleInOneStep};
+
+		int failed = 0;
+		for (int c = 0; c < checks.length; c++) {
+			if (!names[c].contains(filter)) continue;
+			String failure = checks[c].run();
+			System.out.println(String.format("%-28s %s", names[c], (failure == null) ? "passed" : "FAILED: " + failure));
+			if (failure != null) failed++;
+		}
+
+		if (failed > 0) System.exit(1);
+
+	}
+
+	/*
+	 *  Checks:
+	 */
+
+	//Copies of copies of a memory-mapped map, each changed after copying (as is the map copied),
+	//	keep all their terrain, and do not see changes to the map they were copied from
+	//	(both when read tile by tile, and when written to a level file and read back)
+	private static String mapCopyOnWrite() throws Exception {
+
+		Random random = new Random(SEED);
+		int height = 37;
+		int width = 53;
+		char[] symbols = {'.', '#', '~'};
+
+		//Expected terrain, starting from a random map written to a binary level file:
+		char[][] expected = new char[height][width];
+		GridMap original = new GridMap(height, width);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				expected[y][x] = symbols[random.nextInt(symbols.length)];
+				original.updateTerrain(y, x, expected[y][x]);
+			}
+		}
+		File file = File.createTempFile("check", BinaryLevelFormat.FILE_EXTENSION);
+		file.deleteOnExit();
+		BinaryLevelFormat.write(new Level(original), file.getPath());
+
+		//Read back (memory-mapped, read-only) and copy it several times, changing one tile of each copy,
+		//	and one tile of the map it was copied from (before the copy changes anything):
+		GridMap map = BinaryLevelFormat.read(file.getPath()).getMap();
+		for (int generation = 1; generation <= 4; generation++) {
+
+			GridMap copied = map;
+			char[][] copiedExpected = new char[height][];
+			for (int y = 0; y < height; y++) {
+				copiedExpected[y] = expected[y].clone();
+			}
+			map = copied.copy();
+
+			int y = random.nextInt(height);
+			int x = random.nextInt(width);
+			copiedExpected[y][x] = symbols[random.nextInt(symbols.length)];
+			copied.updateTerrain(y, x, copiedExpected[y][x]);
+
+			y = random.nextInt(height);
+			x = random.nextInt(width);
+			expected[y][x] = symbols[random.nextInt(symbols.length)];
+			map.updateTerrain(y, x, expected[y][x]);
+
+			String difference = compare(map, expected, "copy " + generation);
+			if (difference != null) return difference;
+			difference = compare(copied, copiedExpected, "map changed after copy " + generation);
+			if (difference != null) return difference;
+
+			//The changed copy written to a level file (and the text format) and read back:
+			BinaryLevelFormat.write(new Level(map), file.getPath());
+			difference = compare(BinaryLevelFormat.read(file.getPath()).getMap(), expected,
+					"copy " + generation + " via binary level file");
+			if (difference != null) return difference;
+
+			File text = File.createTempFile("check", ".dat");
+			text.deleteOnExit();
+			LevelLoader.write(new Level(map), text.getPath());
+			difference = compare(new LevelLoader().load(text.getPath()).getMap(), expected,
+					"copy " + generation + " via text map file");
+			if (difference != null) return difference;
+
+		}
+		return null;
+
+	}
+
+	//A level file written while a level read from it is still in use (memory-mapped) is replaced:
+	//	the level in use keeps its terrain, and reading the file again gives the new level
+	//	(a smaller one, so a file rewritten in place would be truncated under the mapped level)
+	private static String levelFileReplace() throws Exception {
+
+		Random random = new Random(SEED);
+		char[] symbols = {'.', '#', '~'};
+		char[][] large = new char[64][80];
+		char[][] small = new char[5][7];
+		File file = File.createTempFile("check", BinaryLevelFormat.FILE_EXTENSION);
+		file.deleteOnExit();
+
+		GridMap inUse = null;
+		for (char[][] expected : new char[][][] {large, small}) {
+			GridMap map = new GridMap(expected.length, expected[0].length);
+			for (int y = 0; y < expected.length; y++) {
+				for (int x = 0; x < expected[y].length; x++) {
+					expected[y][x] = symbols[random.nextInt(symbols.length)];
+					map.updateTerrain(y, x, expected[y][x]);
+				}
+			}
+			BinaryLevelFormat.write(new Level(map), file.getPath());
+			if (inUse == null) inUse = BinaryLevelFormat.read(file.getPath()).getMap();
+		}
+
+		String difference = compare(inUse, large, "level in use");
+		if (difference != null) return difference;
+		difference = compare(BinaryLevelFormat.read(file.getPath()).getMap(), small, "level read again");
+		if (difference != null) return difference;
+
+		File[] left = file.getAbsoluteFile().getParentFile().listFiles((dir, name) -> name.startsWith("." + file.getName()));
+		return (left != null && left.length > 0) ? "temporary file " + left[0] + " left behind" : null;
+
+	}
+
+	//A flow field repaired incrementally, as the source moves and tiles change, keeps the same
+	//	distances as a breadth-first search from scratch (on random maps, radii and moves)
+	private static String flowFieldRepair() {
+
+		Random random = new Random(SEED);
+		int[] radii = {1, 2, 3, 5, 8, 13};
+
+		for (int trial = 0; trial < 200; trial++) {
+
+			int height = 10 + random.nextInt(50);
+			int width = 10 + random.nextInt(50);
+			GridMap map = new GridMap(height, width);
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					if (random.nextInt(4) == 0) map.updateTerrain(y, x, random.nextBoolean() ? '#' : '~');
+				}
+			}
+
+			int radius = radii[random.nextInt(radii.length)];
+			FlowField field = new FlowField(map, radius);
+			int sourceY = random.nextInt(height);
+			int sourceX = random.nextInt(width);
+			field.compute(sourceY, sourceX);
+
+			for (int step = 0; step < 500; step++) {
+
+				String operation;
+				int r = random.nextInt(10);
+				if (r < 6) {
+					//Move the source one tile (to any tile in the map, even a wall):
+					int direction = random.nextInt(4);
+					int y = sourceY + FlowField.getStepY(direction);
+					int x = sourceX + FlowField.getStepX(direction);
+					if (y < 0 || y >= height || x < 0 || x >= width) continue;
+					sourceY = y;
+					sourceX = x;
+					field.setSource(sourceY, sourceX);
+					operation = "move to (" + x + "," + y + ")";
+				} else if (r < 9) {
+					//Change a tile near the source (wall to open, or open to wall):
+					int y = sourceY + random.nextInt(2 * radius + 3) - radius - 1;
+					int x = sourceX + random.nextInt(2 * radius + 3) - radius - 1;
+					if (y < 0 || y >= height || x < 0 || x >= width) continue;
+					map.updateTerrain(y, x, map.isTraversable(y, x) ? '#' : '.');
+					field.updateTile(y, x);
+					operation = "change tile (" + x + "," + y + ")";
+				} else {
+					//Jump the source anywhere:
+					sourceY = random.nextInt(height);
+					sourceX = random.nextInt(width);
+					field.setSource(sourceY, sourceX);
+					operation = "jump to (" + sourceX + "," + sourceY + ")";
+				}
+
+				int[][] expected = breadthFirstDistances(map, sourceY, sourceX, radius);
+				for (int y = sourceY - radius - 1; y <= sourceY + radius + 1; y++) {
+					for (int x = sourceX - radius - 1; x <= sourceX + radius + 1; x++) {
+						int e = (y < 0 || y >= height || x < 0 || x >= width) ? FlowField.UNREACHABLE : expected[y][x];
+						if (field.getDistance(y, x) != e) {
+							return "trial " + trial + " (radius " + radius + "), step " + step + " (" + operation
+									+ "): distance of (" + x + "," + y + ") is " + field.getDistance(y, x) + ", expected " + e;
+						}
+					}
+				}
+
+			}
+		}
+		return null;
+
+	}
+
+	//The handle of a removed entity never finds another entity, however often its slot has been
+	//	reused since (random adds and removes on a small store, so that every slot is reused many times)
+	private static String staleEntityHandles() {
+
+		Random random = new Random(SEED);
+		EntityStore<Item> store = new EntityStore<Item>();
+		ArrayList<Item> live = new ArrayList<Item>();
+		ArrayList<Long> liveHandles = new ArrayList<Long>();
+		ArrayList<Long> staleHandles = new ArrayList<Long>();
+
+		for (int step = 0; step < 200000; step++) {
+
+			if (live.isEmpty() || (live.size() < 8 && random.nextBoolean())) {
+				Item item = new Item(0, 0, '+');
+				live.add(item);
+				liveHandles.add(store.add(item));
+				if (random.nextBoolean()) store.activate(item);
+			} else {
+				int i = random.nextInt(live.size());
+				store.remove(live.remove(i));
+				staleHandles.add(liveHandles.remove(i));
+			}
+
+			for (int i = 0; i < live.size(); i++) {
+				if (store.get(liveHandles.get(i)) != live.get(i)) {
+					return "step " + step + ": handle " + Long.toHexString(liveHandles.get(i)) + " does not find its entity";
+				}
+			}
+			for (int i = 0; i < 4 && !staleHandles.isEmpty(); i++) {
+				long handle = staleHandles.get(random.nextInt(staleHandles.size()));
+				if (store.get(handle) != null) {
+					return "step " + step + ": stale handle " + Long.toHexString(handle) + " finds an entity";
+				}
+			}
+
+		}
+		return null;
+
+	}
+
+	//A battle resolved in one step (headless mode) ends exactly as the round by round battle loop does:
+	//	same rounds, health left on both sides, damage taken and monsters defeated, for every combination
+	//	of health (including none left at the start), player damage, and monster damage (including none,
+	//	or negative damage which heals the player)
+	private static String battleInOneStep() {
+
+		PrintStream discard = new PrintStream(new OutputStream() {
+			public void write(int b) {
+				//Discard the battle messages
+			}
+		});
+
+		for (int playerDamage = 1; playerDamage <= 11; playerDamage++) {
+
+			//(A level 0 player does 1 damage, and every level adds 1)
+			Player headlessPlayer = new Player("Bob", playerDamage - 1);
+			Player loopPlayer = new Player("Bob", playerDamage - 1);
+			World headless = new World(headlessPlayer, 1, 1);
+			headless.setHeadless(true);
+			World loop = new World(loopPlayer, 1, 1);
+			loop.setOutput(discard);
+
+			for (int monsterDamage = -3; monsterDamage <= 11; monsterDamage++) {
+				for (int playerHealth = -2; playerHealth <= 59; playerHealth++) {
+					for (int monsterHealth = -2; monsterHealth <= 59; monsterHealth++) {
+
+						Monster headlessMonster = new Monster("Slime", 59, monsterDamage);
+						Monster loopMonster = new Monster("Slime", 59, monsterDamage);
+						headlessMonster.setCurrentHealth(monsterHealth);
+						loopMonster.setCurrentHealth(monsterHealth);
+						headlessPlayer.setCurrentHealth(playerHealth);
+						loopPlayer.setCurrentHealth(playerHealth);
+
+						int[] expected = {loop.runBattleLoop(loopMonster), loopPlayer.getCurrentHealth(),
+								loopMonster.getCurrentHealth(), loop.getDamageTaken(), loop.getMonstersDefeated()};
+						int[] actual = {headless.resolveBattle(headlessMonster), headlessPlayer.getCurrentHealth(),
+								headlessMonster.getCurrentHealth(), headless.getDamageTaken(), headless.getMonstersDefeated()};
+
+						if (!Arrays.equals(actual, expected)) {
+							return "player health " + playerHealth + ", damage " + playerDamage + " against monster health "
+									+ monsterHealth + ", damage " + monsterDamage + ": (rounds, player health, monster health,"
+									+ " total damage taken, total defeated) is " + Arrays.toString(actual)
+									+ ", expected " + Arrays.toString(expected);
+						}
+
+					}
+				}
+			}
+		}
+		return null;
+
+	}
+
+	/*
+	 *  Helper method to return the distance from the source of every tile of the map, by a plain
+	 *  	breadth-first search over the open tiles (the source itself need not be open), up to 'radius' moves
+	 */
+	private static int[][] breadthFirstDistances(Map map, int sourceY, int sourceX, int radius) {
+
+		int[][] distances = new int[map.getHeight()][map.getWidth()];
+		for (int[] row : distances) {
+			Arrays.fill(row, FlowField.UNREACHABLE);
+		}
+
+		ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+		distances[sourceY][sourceX] = 0;
+		queue.add(new int[] {sourceY, sourceX});
+		while (!queue.isEmpty()) {
+			int[] tile = queue.poll();
+			int d = distances[tile[0]][tile[1]];
+			if (d == radius) continue;
+			for (int direction = 0; direction < 4; direction++) {
+				int y = tile[0] + FlowField.getStepY(direction);
+				int x = tile[1] + FlowField.getStepX(direction);
+				if (y < 0 || y >= map.getHeight() || x < 0 || x >= map.getWidth()) continue;
+				if (distances[y][x] != FlowField.UNREACHABLE || !map.isTraversable(y, x)) continue;
+				distances[y][x] = d + 1;
+				queue.add(new int[] {y, x});
+			}
+		}
+		return distances;
+
+	}
+
+	/*
+	 *  Helper method to compare every tile of a map (symbol and traversability) with the expected symbols
+	 */
+	private static String compare(Map map, char[][] expected, String description) {
+
+		for (int y = 0; y < expected.length; y++) {
+			for (int x = 0; x < expected[y].length; x++) {
+				Terrain t = map.getElement(y, x);
+				if (t.getSymbol() != expected[y][x] || map.isTraversable(y, x) != Terrain.isTraversable(expected[y][x])) {
+					return description + ": tile (" + x + "," + y + ") is '" + t.getSymbol()
+							+ "', expected '" + expected[y][x] + "'";
+				}
+			}
+		}
+		return null;
+
+	}
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Class for GameWorldFixture objects
+ * The benchmarks' access to the game (see rogue.bench.WorldFixture): a level written to a text
+ * 	map file, and a world created from it whose per-turn methods the benchmarks call.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import rogue.bench.WorldFixture;
+
+public class GameWorldFixture implements WorldFixture {
+
+	private final static long SEED = 42;
+
+	private File file;
+	private Level level;
+	private Player player;
+	private World world;
+	private int pathfindingRadius;
+	private LevelLoader loader = new LevelLoader();
+	private PrintStream discard = new PrintStream(new OutputStream() {
+		public void write(int b) {
+			//Discard
+		}
+		public void write(byte[] b, int off, int len) {
+			//Discard
+		}
+	});
+
+	@Override
+	public void setUp(int size, int entities, int pathfindingRadius) throws Exception {
+		this.pathfindingRadius = pathfindingRadius;
+		this.file = writeMapFile(size, entities);
+		this.level = loader.load(file.getPath());
+		this.player = new Player("Bench");
+		resetWorld();
+	}
+
+	@Override
+	public void resetWorld() {
+		world = level.createWorld(player);
+		world.setOutput(discard);
+		world.setPathfinding(pathfindingRadius);
+	}
+
+	@Override
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Override
+	public void renderWorld() {
+		world.renderWorld();
+	}
+
+	@Override
+	public Object getObjectToRender(int y, int x) {
+		return world.getObjectToRender(y, x);
+	}
+
+	@Override
+	public void moveMonsters() {
+		world.moveMonsters();
+	}
+
+	@Override
+	public boolean checkClashAndBattle() {
+		return world.checkClashAndBattle();
+	}
+
+	@Override
+	public boolean checkItemsAndCollect() {
+		return world.checkItemsAndCollect();
+	}
+
+	@Override
+	public Object loadLevel() throws Exception {
+		return loader.load(file.getPath()).createWorld(player);
+	}
+
+	/*
+	 *  Helper method to write the text map file of the level (see WorldFixture.setUp)
+	 */
+	private static File writeMapFile(int size, int entities) throws IOException {
+
+		Random random = new Random(SEED);
+		File file = File.createTempFile("bench" + size + "_" + entities + "_", ".dat");
+		file.deleteOnExit();
+		int centre = size / 2;
+
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			writer.println(size + " " + size);
+			char[] row = new char[size];
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					int r = random.nextInt(20);
+					row[x] = (r == 0) ? '#' : (r == 1) ? '~' : '.';
+				}
+				if (y == centre) row[centre] = '.';
+				writer.println(row);
+			}
+			writer.println("player " + centre + " " + centre);
+			for (int i = 0; i < entities; i++) {
+				int x = random.nextInt(size);
+				int y = random.nextInt(size);
+				if (x == centre && y == centre) continue;
+				writer.println("monster " + x + " " + y + " Slime 5 1");
+			}
+			for (int i = 0; i < entities / 10; i++) {
+				int x = random.nextInt(size);
+				int y = random.nextInt(size);
+				if (x == centre && y == centre) continue;
+				writer.println("item " + x + " " + y + " " + (random.nextBoolean() ? '+' : '^'));
+			}
+		}
+		return file;
+
+	}
+
+}
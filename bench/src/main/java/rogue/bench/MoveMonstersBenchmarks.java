@@ -0,0 +1,72 @@
+/**
+ * JMH benchmarks for one turn of monster movement, for every combination of map size,
+ * 	entity count and pathfinding radius (0: monsters step greedily towards the player).
+ * Monsters converge on the player as turns go by, so every invocation starts from a new world
+ * 	created from the same level, after one (untimed) turn of movement so that the pathfinding
+ * 	flow field is already built: each invocation measures the same (second) turn.
+ * 	(Per-invocation setup adds some timing noise to the smallest worlds, see Level.Invocation.)
+ * @author: Damian Curran
+ *
+ */
+
+package rogue.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveMonstersBenchmarks {
+
+	@Param({"64", "256", "1024"})
+	public int size;
+
+	@Param({"10", "1000", "10000"})
+	public int entities;
+
+	@Param({"0", "32"})
+	public int pathfindingRadius;
+
+	private WorldFixture fixture;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		fixture = WorldFixture.create();
+		fixture.setUp(size, entities, pathfindingRadius);
+	}
+
+	@Setup(Level.Invocation)
+	public void resetWorld() {
+		fixture.resetWorld();
+		fixture.moveMonsters();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.tearDown();
+	}
+
+	//One turn of monster movement
+	@Benchmark
+	public void moveMonsters() {
+		fixture.moveMonsters();
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * JMH benchmarks for the world loop hot paths which do not change the world
+ * 	(rendering, lookups, and the clash and item checks, with the player kept on an empty grid),
+ * 	and for level loading; for every combination of map size and entity count.
+ * Monster movement changes the world, so is benchmarked separately (see MoveMonstersBenchmarks).
+ * @author: Damian Curran
+ *
+ */
+
+package rogue.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmarks {
+
+	private final static long SEED = 42;
+	private final static int CELLS = 4096;	//Number of random cells looked up (a power of two)
+
+	@Param({"64", "256", "1024"})
+	public int size;
+
+	@Param({"10", "1000", "10000"})
+	public int entities;
+
+	private WorldFixture fixture;
+	private int[] cells;
+	private int nextCell;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		fixture = WorldFixture.create();
+		fixture.setUp(size, entities, 0);
+
+		Random random = new Random(SEED);
+		cells = new int[CELLS];
+		for (int i = 0; i < CELLS; i++) {
+			cells[i] = random.nextInt(size * size);
+		}
+
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.tearDown();
+	}
+
+	//Full render of the map (written to a discarding stream)
+	@Benchmark
+	public void renderWorld() {
+		fixture.renderWorld();
+	}
+
+	//Lookup of the object to render at one (pseudo-random) map cell
+	@Benchmark
+	public Object getObjectToRender() {
+		int c = cells[nextCell++ & (CELLS - 1)];
+		return fixture.getObjectToRender(c / size, c % size);
+	}
+
+	//Check for a battle on the player's grid
+	@Benchmark
+	public boolean checkClashAndBattle() {
+		return fixture.checkClashAndBattle();
+	}
+
+	//Check for items on the player's grid
+	@Benchmark
+	public boolean checkItemsAndCollect() {
+		return fixture.checkItemsAndCollect();
+	}
+
+	//Load of the text map file into a new world
+	@Benchmark
+	public Object loadLevel() throws Exception {
+		return fixture.loadLevel();
+	}
+
+}
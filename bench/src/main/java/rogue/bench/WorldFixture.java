@@ -0,0 +1,56 @@
+/**
+ * Interface for the benchmark world fixture
+ * The game classes are in the default package, which JMH benchmarks (and any other class in a
+ * 	named package) cannot refer to. The benchmarks reach the game through this interface instead,
+ * 	implemented by GameWorldFixture in the default package.
+ * @author: Damian Curran
+ *
+ */
+
+package rogue.bench;
+
+public interface WorldFixture {
+
+	/*
+	 *  Create the fixture (an instance of GameWorldFixture)
+	 */
+	static WorldFixture create() throws ReflectiveOperationException {
+		return (WorldFixture) Class.forName("GameWorldFixture").getDeclaredConstructor().newInstance();
+	}
+
+	/*
+	 *  Build a size x size level with random walls and water, 'entities' monsters and entities / 10
+	 *  	items (none on the player's grid), written to a text map file, and a world created from it
+	 *  	(monsters using pathfinding within 'pathfindingRadius', or stepping greedily if 0)
+	 */
+	void setUp(int size, int entities, int pathfindingRadius) throws Exception;
+
+	/*
+	 *  Replace the world with a new one created from the level (undoing any moves made in the old one)
+	 */
+	void resetWorld();
+
+	/*
+	 *  Delete the map file
+	 */
+	void tearDown();
+
+	/*
+	 *  Operations on the world (the world loop hot paths):
+	 */
+	void renderWorld();
+
+	Object getObjectToRender(int y, int x);
+
+	void moveMonsters();
+
+	boolean checkClashAndBattle();
+
+	boolean checkItemsAndCollect();
+
+	/*
+	 *  Load the map file into a new level, and create a world from it; returns the world
+	 */
+	Object loadLevel() throws Exception;
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Class for ActiveRegions objects
+ * Splits the map into square regions of REGION_SIZE x REGION_SIZE tiles, and keeps entities
+ * 	either active (in a region near the player) or dormant (bucketed by their region).
+ * Only the active entities need to be checked each turn: dormant entities are woken when the
+ * 	player comes within the activation distance of their region, so the cost of a turn
+ * 	depends on the number of entities near the player rather than the total number.
+ * The entities themselves are held in an EntityStore (the active entities are the store's active entities).
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ActiveRegions<T extends Entity> {
+
+	public final static int REGION_SIZE = 32;
+	private final static int REGION_SHIFT = 5;
+
+	private EntityStore<T> store;
+
+	//Dormant entities, keyed by region (packed as regionY << 32 | regionX):
+	private HashMap<Long, ArrayList<T>> dormant;
+
+	//Regions currently awake: [minRegionY, maxRegionY] x [minRegionX, maxRegionX] (none to start with)
+	private int minRegionY;
+	private int maxRegionY;
+	private int minRegionX;
+	private int maxRegionX;
+
+	/*
+	 *  Constructor
+	 */
+	public ActiveRegions(EntityStore<T> store) {
+		this.store = store;
+		this.dormant = new HashMap<Long, ArrayList<T>>();
+		this.minRegionY = 0;
+		this.maxRegionY = -1;
+		this.minRegionX = 0;
+		this.maxRegionX = -1;
+	}
+
+	/*
+	 *  Add entity, which must already be in the store (active if its region is awake, otherwise dormant)
+	 */
+	public void add(T e) {
+		if (isAwake(e.getPosY() >> REGION_SHIFT, e.getPosX() >> REGION_SHIFT)) {
+			store.activate(e);
+		} else {
+			park(e);
+		}
+	}
+
+	/*
+	 *  Remove entity (whether active or dormant) before it is removed from the store
+	 *  	(Active entities need nothing doing: removing them from the store is enough.)
+	 */
+	public void remove(T e) {
+
+		if (store.isActive(e)) return;
+
+		Long key = keyOf(e.getPosY() >> REGION_SHIFT, e.getPosX() >> REGION_SHIFT);
+		ArrayList<T> bucket = dormant.get(key);
+		if (bucket == null) return;
+		bucket.remove(e);
+		if (bucket.isEmpty()) dormant.remove(key);
+
+	}
+
+	/*
+	 *  Wake every region within 'distance' tiles (in both directions) of (y,x), the player position,
+	 *  	and put the active entities in any other region to sleep.
+	 *  Does nothing unless the regions to wake have changed since the last update.
+	 */
+	public void update(int y, int x, int distance) {
+
+		int newMinY = (y - distance) >> REGION_SHIFT;
+		int newMaxY = (y + distance) >> REGION_SHIFT;
+		int newMinX = (x - distance) >> REGION_SHIFT;
+		int newMaxX = (x + distance) >> REGION_SHIFT;
+		if (newMinY == minRegionY && newMaxY == maxRegionY && newMinX == minRegionX && newMaxX == maxRegionX) return;
+
+		minRegionY = newMinY;
+		maxRegionY = newMaxY;
+		minRegionX = newMinX;
+		maxRegionX = newMaxX;
+
+		//Put active entities which are now outside the awake regions to sleep:
+		//	(Deactivating an entity moves the last active entity into its place.)
+		List<T> active = store.getActive();
+		int i = 0;
+		while (i < active.size()) {
+			T e = active.get(i);
+			if (isAwake(e.getPosY() >> REGION_SHIFT, e.getPosX() >> REGION_SHIFT)) {
+				i++;
+			} else {
+				store.deactivate(e);
+				park(e);
+			}
+		}
+
+		//Wake the dormant entities in the awake regions:
+		for (int ry = minRegionY; ry <= maxRegionY; ry++) {
+			for (int rx = minRegionX; rx <= maxRegionX; rx++) {
+				ArrayList<T> bucket = dormant.remove(keyOf(ry, rx));
+				if (bucket == null) continue;
+				for (T e : bucket) {
+					store.activate(e);
+				}
+			}
+		}
+
+	}
+
+	/*
+	 *  Returns the active entities (read-only)
+	 */
+	public List<T> getActive() {
+		return store.getActive();
+	}
+
+	/*
+	 *  Returns the number of dormant entities
+	 */
+	public int getDormantCount() {
+		return store.size() - store.getActiveCount();
+	}
+
+	/*
+	 *  Helper method to add an entity to the dormant bucket of its region
+	 */
+	private void park(T e) {
+
+		Long key = keyOf(e.getPosY() >> REGION_SHIFT, e.getPosX() >> REGION_SHIFT);
+		ArrayList<T> bucket = dormant.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<T>();
+			dormant.put(key, bucket);
+		}
+		bucket.add(e);
+
+	}
+
+	private boolean isAwake(int regionY, int regionX) {
+		return regionY >= minRegionY && regionY <= maxRegionY && regionX >= minRegionX && regionX <= maxRegionX;
+	}
+
+	/*
+	 *  Helper method to pack region (regionY, regionX) into a single key
+	 */
+	private static Long keyOf(int regionY, int regionX) {
+		return ((long) regionY << 32) | (regionX & 0xFFFFFFFFL);
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Class for AtomicFileWriter objects
+ * Writes a file by writing a temporary file next to it, then renaming it over the file in one step
+ * 	(once it is forced to disk), so readers only ever see the old file or the whole new one.
+ * 	This matters for level files: they are memory-mapped while in use (see BinaryLevelFormat.read),
+ * 	and truncating a mapped file in place would crash whoever has it mapped.
+ * Usage: write to getChannel(), then call commit(). Closing without committing deletes the temporary file.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class AtomicFileWriter implements AutoCloseable {
+
+	private Path target;
+	private Path temporary;
+	private FileChannel channel;
+	private boolean committed;
+
+	/*
+	 *  Constructor: create the temporary file, in the same directory as 'filename'
+	 */
+	public AtomicFileWriter(String filename) throws IOException {
+		this.target = Paths.get(filename).toAbsolutePath();
+		this.temporary = target.resolveSibling("." + target.getFileName() + "." + System.nanoTime() + ".tmp");
+		this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+	}
+
+	/*
+	 *  Returns the channel to write the new file content to
+	 */
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	/*
+	 *  Force the new content to disk, and replace the file with it
+	 */
+	public void commit() throws IOException {
+		channel.force(true);
+		channel.close();
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		committed = true;
+	}
+
+	/*
+	 *  Delete the temporary file, unless it has been committed (the file is then left as it was)
+	 */
+	@Override
+	public void close() throws IOException {
+		if (committed) return;
+		channel.close();
+		Files.deleteIfExists(temporary);
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ * Class for BatchSimulator objects
+ * Plays a level many times in headless mode, spreading the games over all cores with a
+ * 	fork-join pool. Every game has its own World, Player and move source (seeded by game number),
+ * 	so the results are the same whatever the number of threads.
+ * Usage: java BatchSimulator <level file> <games> [random | seek | script=<file>] [seed] [max turns] [threads]
+ * 	(the level file can also be given as generated:<height>x<width>:<seed>, to use a generated level)
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class BatchSimulator {
+
+	private final static int DEFAULT_MAX_TURNS = 10000;
+	private final static int GAMES_PER_TASK = 64;	//Games played by one task before splitting
+
+	private Simulation simulation;
+	private String policy;
+	private ScriptMoveSource script;	//Loaded once, if the policy is a script
+	private long seed;
+	private ForkJoinPool pool;
+
+	/*
+	 *  Constructor
+	 */
+	public BatchSimulator(Level level, int maxTurns, String policy, long seed, int threads) throws IOException {
+
+		this.simulation = new Simulation(level, maxTurns);
+		this.policy = policy;
+		this.seed = seed;
+		this.pool = new ForkJoinPool(threads);
+
+		//Check the policy now (and load the script only once, rather than once per game):
+		MoveSource moves = Simulation.createMoveSource(policy, seed);
+		if (moves instanceof ScriptMoveSource) script = (ScriptMoveSource) moves;
+
+	}
+
+	/*
+	 *  Play the given number of games, and return the combined statistics
+	 */
+	public SimulationStats run(int games) {
+		return pool.invoke(new Batch(0, games));
+	}
+
+	/*
+	 *  Shut down the worker threads (once no more batches are to be run)
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/*
+	 *  Fork-join task playing games [from, to), splitting the range in half until it is small enough
+	 */
+	private class Batch extends RecursiveTask<SimulationStats> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int from;
+		private int to;
+
+		private Batch(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected SimulationStats compute() {
+
+			if (to - from > GAMES_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				Batch left = new Batch(from, middle);
+				left.fork();
+				SimulationStats stats = new Batch(middle, to).compute();
+				stats.merge(left.join());
+				return stats;
+			}
+
+			SimulationStats stats = new SimulationStats();
+			for (int game = from; game < to; game++) {
+				simulation.play(moveSourceFor(game), stats);
+			}
+			return stats;
+
+		}
+
+	}
+
+	/*
+	 *  Helper method to create the move source for one game
+	 */
+	private MoveSource moveSourceFor(int game) {
+
+		if (script != null) return script.copy();
+		try {
+			return Simulation.createMoveSource(policy, seed + game);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); //Only script policies read files (handled above)
+		}
+
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java BatchSimulator <level file | generated:<height>x<width>:<seed>> <games> "
+					+ "[random | seek | script=<file>] [seed] [max turns] [threads]");
+			return;
+		}
+
+		try {
+
+			String filename = args[0];
+			int games = Integer.parseInt(args[1]);
+			String policy = (args.length > 2) ? args[2] : "seek";
+			long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1;
+			int maxTurns = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_MAX_TURNS;
+			int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+			Level level = Simulation.loadLevel(filename);
+			BatchSimulator simulator = new BatchSimulator(level, maxTurns, policy, seed, threads);
+
+			long start = System.nanoTime();
+			SimulationStats stats = simulator.run(games);
+			long elapsed = System.nanoTime() - start;
+			simulator.shutdown();
+
+			stats.print(System.out);
+			System.out.println(String.format("Elapsed: %.1f ms on %d threads (%.0f games/s)",
+					elapsed / 1e6, threads, games / (elapsed / 1e9)));
+
+		} catch (GameLevelNotFoundException e) {
+			System.out.println(e.getMessage());
+		} catch (Exception e) {
+			System.out.println("The following error occured while running the simulation:");
+			System.out.println(e.getMessage());
+		}
+
+	}
+
+}
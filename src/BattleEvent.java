@@ -0,0 +1,45 @@
+/**
+ * Class for BattleEvent objects
+ * Java Flight Recorder event for one battle between the player and a monster
+ * 	(round by round in World.runBattleLoop, or in one step in headless mode).
+ * Disabled by default, like TurnEvent (enable "rogue.Battle" to record it).
+ * @author: Damian Curran
+ *
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rogue.Battle")
+@Label("Battle")
+@Category("Rogue")
+@Description("A battle between the player and a monster")
+@Enabled(false)
+public class BattleEvent extends Event {
+
+	@Label("Monster")
+	String monster;
+
+	@Label("Rounds")
+	@Description("Number of attacks made by the player")
+	int rounds;
+
+	@Label("Player Won")
+	boolean playerWon;
+
+	@Label("Damage Taken")
+	int damageTaken;
+
+	@Label("Player Health")
+	@Description("Player health after the battle")
+	int playerHealth;
+
+	@Label("Narrated")
+	@Description("True if the battle was printed round by round, false if it was resolved in one step")
+	boolean narrated;
+
+}
@@ -0,0 +1,218 @@
+/**
+ * Class for reading and writing levels in the binary level format (.lvl files)
+ * The file is laid out so the terrain can be memory-mapped and used in place:
+ * 	header (32 bytes):	magic, version, width, height, record count,
+ * 						terrain offset, traversable bitset offset, records offset (all int)
+ * 	terrain:			width * height symbol bytes (row-major)
+ * 	traversable bitset:	(width * height + 63) / 64 longs (8-byte aligned)
+ * 	entity records:		RECORD_SIZE bytes each (player, monster or item)
+ * All values are big-endian.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryLevelFormat {
+
+	public final static String FILE_EXTENSION = ".lvl";
+
+	private final static int MAGIC = 0x52474C56; // "RGLV"
+	private final static int VERSION = 1;
+	private final static int HEADER_SIZE = 32;
+
+	//Entity record layout:
+	//	type (byte), symbol (byte), name length (short), x, y, health, attack (int), name (UTF-8)
+	private final static int RECORD_SIZE = 64;
+	private final static int MAX_NAME_LENGTH = RECORD_SIZE - 20;
+	private final static byte PLAYER_RECORD = 1;
+	private final static byte MONSTER_RECORD = 2;
+	private final static byte ITEM_RECORD = 3;
+
+	/*
+	 *  Load a binary level file
+	 *  The file is memory-mapped (read-only), and the map terrain uses the mapped data in place,
+	 *  	so only the entity records are actually read during the load.
+	 *  	(The map makes its own copy of the terrain only if it is ever changed.)
+	 *  Throws GameLevelNotFoundException if the file cannot be opened or read,
+	 *  	and IllegalArgumentException (with a description) if the file content is invalid.
+	 */
+	public static Level read(String filename) throws GameLevelNotFoundException {
+
+		MappedByteBuffer file;
+
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (NoSuchFileException e) {
+			throw new GameLevelNotFoundException();
+		} catch (IOException e) {
+			throw new GameLevelNotFoundException("Error reading map file.");
+		}
+
+		//Header:
+		if (file.capacity() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a binary level file.");
+		}
+		if (file.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Unsupported binary level file version " + file.getInt(4) + ".");
+		}
+		int width = file.getInt(8);
+		int height = file.getInt(12);
+		int recordCount = file.getInt(16);
+		int terrainOffset = file.getInt(20);
+		int bitsOffset = file.getInt(24);
+		int recordsOffset = file.getInt(28);
+
+		long tiles = (long) width * height;
+		if (width < 0 || height < 0 || tiles > Integer.MAX_VALUE || recordCount < 0
+				|| terrainOffset < HEADER_SIZE || bitsOffset < terrainOffset + tiles
+				|| recordsOffset < bitsOffset + 8L * GridMap.wordsFor((int) tiles)
+				|| file.capacity() < recordsOffset + (long) recordCount * RECORD_SIZE) {
+			throw new IllegalArgumentException("Binary level file is truncated or corrupt.");
+		}
+
+		//Terrain, used in place:
+		ByteBuffer symbols = slice(file, terrainOffset, (int) tiles);
+		LongBuffer traversable = slice(file, bitsOffset, 8 * GridMap.wordsFor((int) tiles)).asLongBuffer();
+		Level level = new Level(new GridMap(height, width, symbols, traversable));
+
+		//Entity records:
+		for (int r = 0; r < recordCount; r++) {
+
+			int offset = recordsOffset + r * RECORD_SIZE;
+			int x = file.getInt(offset + 4);
+			int y = file.getInt(offset + 8);
+
+			switch (file.get(offset)) {
+
+				case PLAYER_RECORD:
+					level.setPlayerPosition(x, y);
+					break;
+
+				case MONSTER_RECORD:
+					int nameLength = file.getShort(offset + 2);
+					if (nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+						throw new IllegalArgumentException("Invalid monster name in record " + r + ".");
+					}
+					byte[] name = new byte[nameLength];
+					for (int i = 0; i < nameLength; i++) {
+						name[i] = file.get(offset + 20 + i);
+					}
+					level.addMonster(x, y, new String(name, StandardCharsets.UTF_8),
+							file.getInt(offset + 12), file.getInt(offset + 16));
+					break;
+
+				case ITEM_RECORD:
+					level.addItem(x, y, (char) (file.get(offset + 1) & 0xFF));
+					break;
+
+				default:
+					break;
+
+			}
+
+		}
+
+		return level;
+
+	}
+
+	/*
+	 *  Write a level to a binary level file
+	 */
+	public static void write(Level level, String filename) throws IOException {
+
+		GridMap map = level.getMap();
+		int tiles = map.getHeight() * map.getWidth();
+		int words = GridMap.wordsFor(tiles);
+		int recordCount = (level.hasPlayerPosition() ? 1 : 0)
+				+ level.getMonsters().size() + level.getItems().size();
+
+		int terrainOffset = HEADER_SIZE;
+		int bitsOffset = align8(terrainOffset + tiles);
+		int recordsOffset = bitsOffset + 8 * words;
+
+		ByteBuffer out = ByteBuffer.allocate(recordsOffset + recordCount * RECORD_SIZE);
+
+		//Header:
+		out.putInt(MAGIC).putInt(VERSION).putInt(map.getWidth()).putInt(map.getHeight())
+			.putInt(recordCount).putInt(terrainOffset).putInt(bitsOffset).putInt(recordsOffset);
+
+		//Terrain:
+		out.position(terrainOffset);
+		out.put(map.getSymbols());
+		out.position(bitsOffset);
+		out.asLongBuffer().put(map.getTraversableWords());
+
+		//Entity records:
+		out.position(recordsOffset);
+		if (level.hasPlayerPosition()) {
+			putRecord(out, PLAYER_RECORD, (byte) 0, level.getPlayerPosX(), level.getPlayerPosY(), 0, 0, null);
+		}
+		for (Monster m : level.getMonsters()) {
+			putRecord(out, MONSTER_RECORD, (byte) 0, m.getPosX(), m.getPosY(),
+					m.getMaxHealth(), m.getAttackDamage(), m.getName());
+		}
+		for (Item i : level.getItems()) {
+			putRecord(out, ITEM_RECORD, toByte(i.getSymbol()), i.getPosX(), i.getPosY(), 0, 0, null);
+		}
+
+		//(The file may be mapped by a level in use, so it is replaced, never rewritten in place)
+		out.position(0);
+		try (AtomicFileWriter writer = new AtomicFileWriter(filename)) {
+			while (out.hasRemaining()) {
+				writer.getChannel().write(out);
+			}
+			writer.commit();
+		}
+
+	}
+
+	/*
+	 *  Helper method to write one entity record at the current buffer position
+	 */
+	private static void putRecord(ByteBuffer out, byte type, byte symbol, int x, int y,
+			int health, int attack, String name) {
+
+		int start = out.position();
+		byte[] nameBytes = (name == null) ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length > MAX_NAME_LENGTH) {
+			throw new IllegalArgumentException("Monster name '" + name + "' is too long for a binary level file.");
+		}
+
+		out.put(type).put(symbol).putShort((short) nameBytes.length)
+			.putInt(x).putInt(y).putInt(health).putInt(attack).put(nameBytes);
+		out.position(start + RECORD_SIZE);
+
+	}
+
+	/*
+	 *  Helper method to return an independent buffer over file[offset, offset + length)
+	 */
+	private static ByteBuffer slice(ByteBuffer file, int offset, int length) {
+		ByteBuffer view = file.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+		return view.slice();
+	}
+
+	private static int align8(int offset) {
+		return (offset + 7) & ~7;
+	}
+
+	private static byte toByte(char c) {
+		if (c > 0xFF) {
+			throw new IllegalArgumentException("Unsupported item symbol '" + c + "'.");
+		}
+		return (byte) c;
+	}
+
+}
@@ -0,0 +1,20 @@
+/**
+ * Interface for ChunkGenerator objects
+ * Generates the terrain of a chunk of a ChunkedMap the first time the chunk is used.
+ * Generation must be deterministic (the same chunk always gets the same terrain),
+ * 	as chunks which were never changed are generated again instead of being saved.
+ * @author: Damian Curran
+ *
+ */
+
+public interface ChunkGenerator {
+
+	/*
+	 *  Fill in the terrain symbols of chunk (chunkY, chunkX), which covers map tiles
+	 *  	(chunkY * CHUNK_SIZE + row, chunkX * CHUNK_SIZE + column) for row and column in [0, CHUNK_SIZE)
+	 *  The symbol of each tile is stored at symbols[row * CHUNK_SIZE + column].
+	 *  	(Every symbol is the default terrain symbol to start with.)
+	 */
+	void generate(int chunkY, int chunkX, byte[] symbols);
+
+}
@@ -0,0 +1,303 @@
+/**
+ * Class for ChunkedMap objects
+ * A map which is split into square chunks of CHUNK_SIZE x CHUNK_SIZE tiles, of which only the
+ * 	chunks near the player are kept in memory, so the map can be far larger than the heap:
+ * 	- A chunk is loaded from the chunk store (a directory of chunk files) the first time it is used,
+ * 		or generated (by a ChunkGenerator) if it has never been saved.
+ * 	- When the player moves into another chunk, chunks further than the retain radius (in chunks)
+ * 		are released. Changed chunks are saved to the chunk store first; unchanged chunks
+ * 		are simply generated (or loaded) again if they are used again.
+ * Each chunk stores its terrain as one byte per tile, plus one 64-bit word per row of
+ * 	traversable bits (as GridMap does for the whole map).
+ * Chunked maps are played on directly (they are not copied, or written to level files, as GridMaps are).
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+public class ChunkedMap extends Map {
+
+	public final static int CHUNK_SIZE = 64;
+	private final static int CHUNK_SHIFT = 6;
+	private final static int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final static String CHUNK_FILE_PREFIX = "chunk_";
+	private final static String CHUNK_FILE_EXTENSION = ".chunk";
+	//Chunk file layout: CHUNK_SIZE * CHUNK_SIZE symbol bytes, then CHUNK_SIZE traversable words
+	private final static int CHUNK_FILE_SIZE = CHUNK_SIZE * CHUNK_SIZE + 8 * CHUNK_SIZE;
+
+	private ChunkGenerator generator;
+	private Path store;
+	private int retainRadius;
+
+	//Chunks in memory, keyed by chunk coordinates (packed as chunkY << 32 | chunkX):
+	private HashMap<Long, Chunk> chunks;
+
+	//Last chunk used (most lookups are in the same chunk as the one before):
+	private long lastKey;
+	private Chunk lastChunk;
+
+	//Chunk the player was last in (chunks are only released when the player changes chunk):
+	private long focusKey;
+
+	//Statistics:
+	private long chunksGenerated;
+	private long chunksLoaded;
+	private long chunksSaved;
+
+	/*
+	 *  Terrain of one chunk
+	 */
+	private static class Chunk {
+		byte[] symbols = new byte[CHUNK_SIZE * CHUNK_SIZE];
+		long[] traversable = new long[CHUNK_SIZE];	//Bit x of word y is set if tile (y,x) is traversable
+		boolean changed;
+	}
+
+	/*
+	 *  Constructor
+	 *  Chunks are saved to (and loaded from) the directory 'store', which is created if needed.
+	 *  	(A store left by an earlier map with the same generator continues that map.)
+	 *  retainRadius is the number of chunks kept in memory in every direction around the player's chunk.
+	 */
+	public ChunkedMap(int h, int w, ChunkGenerator generator, Path store, int retainRadius) throws IOException {
+
+		super(h, w);
+		this.generator = generator;
+		this.store = Files.createDirectories(store);
+		this.retainRadius = retainRadius;
+		this.chunks = new HashMap<Long, Chunk>();
+		this.lastKey = -1;
+		this.focusKey = -1;
+
+	}
+
+	/*
+	 *  Setter methods:
+	 */
+	@Override
+	public void setElement(int y, int x, char c, boolean b) {
+
+		checkBounds(y, x);
+		checkSymbol(c);
+
+		Chunk chunk = getChunk(y, x);
+		int row = y & CHUNK_MASK;
+		int column = x & CHUNK_MASK;
+		chunk.symbols[row * CHUNK_SIZE + column] = (byte) c;
+		chunk.traversable[row] = b ? (chunk.traversable[row] | (1L << column))
+				: (chunk.traversable[row] & ~(1L << column));
+		chunk.changed = true;
+
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	@Override
+	public Terrain getElement(int y, int x) {
+		checkBounds(y, x);
+		Chunk chunk = getChunk(y, x);
+		int row = y & CHUNK_MASK;
+		int column = x & CHUNK_MASK;
+		return Terrain.valueOf((char) (chunk.symbols[row * CHUNK_SIZE + column] & 0xFF),
+				(chunk.traversable[row] & (1L << column)) != 0);
+	}
+
+	@Override
+	public boolean isTraversable(int y, int x) {
+		checkBounds(y, x);
+		return (getChunk(y, x).traversable[y & CHUNK_MASK] & (1L << (x & CHUNK_MASK))) != 0;
+	}
+
+	/*
+	 *  Called whenever the player moves to (y,x):
+	 *  When the player enters another chunk, release every chunk outside the retain radius.
+	 */
+	@Override
+	public void focusOn(int y, int x) {
+
+		long key = keyOf(y >> CHUNK_SHIFT, x >> CHUNK_SHIFT);
+		if (key == focusKey) return;
+		focusKey = key;
+
+		int focusY = y >> CHUNK_SHIFT;
+		int focusX = x >> CHUNK_SHIFT;
+		Iterator<java.util.Map.Entry<Long, Chunk>> iterator = chunks.entrySet().iterator();
+		while (iterator.hasNext()) {
+			java.util.Map.Entry<Long, Chunk> entry = iterator.next();
+			int chunkY = (int) (entry.getKey() >> 32);
+			int chunkX = (int) (long) entry.getKey();
+			if (Math.abs(chunkY - focusY) > retainRadius || Math.abs(chunkX - focusX) > retainRadius) {
+				if (entry.getValue().changed) saveChunk(chunkY, chunkX, entry.getValue());
+				iterator.remove();
+			}
+		}
+		lastKey = -1;
+		lastChunk = null;
+
+	}
+
+	/*
+	 *  Save every changed chunk in memory to the chunk store
+	 *  	(so the store holds the whole map, eg. to continue it later)
+	 */
+	public void save() {
+		for (java.util.Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+			if (entry.getValue().changed) {
+				saveChunk((int) (entry.getKey() >> 32), (int) (long) entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/*
+	 *  Delete the chunk store (used for temporary maps, once they are finished with)
+	 */
+	public void deleteStore() throws IOException {
+
+		chunks.clear();
+		lastKey = -1;
+		lastChunk = null;
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(store, CHUNK_FILE_PREFIX + "*" + CHUNK_FILE_EXTENSION)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.deleteIfExists(store);
+
+	}
+
+	/*
+	 *  Statistics getter methods:
+	 */
+	public int getChunksInMemory() {
+		return chunks.size();
+	}
+
+	public long getChunksGenerated() {
+		return chunksGenerated;
+	}
+
+	public long getChunksLoaded() {
+		return chunksLoaded;
+	}
+
+	public long getChunksSaved() {
+		return chunksSaved;
+	}
+
+	/*
+	 *  Helper method to return the chunk holding tile (y,x), loading or generating it if needed
+	 */
+	private Chunk getChunk(int y, int x) {
+
+		int chunkY = y >> CHUNK_SHIFT;
+		int chunkX = x >> CHUNK_SHIFT;
+		long key = keyOf(chunkY, chunkX);
+		if (key == lastKey) return lastChunk;
+
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = loadChunk(chunkY, chunkX);
+			chunks.put(key, chunk);
+		}
+
+		lastKey = key;
+		lastChunk = chunk;
+		return chunk;
+
+	}
+
+	/*
+	 *  Helper method to load a chunk from the chunk store, or generate it if it was never saved
+	 */
+	private Chunk loadChunk(int chunkY, int chunkX) {
+
+		Chunk chunk = new Chunk();
+		Path file = chunkFile(chunkY, chunkX);
+
+		if (Files.exists(file)) {
+
+			ByteBuffer buffer = ByteBuffer.allocate(CHUNK_FILE_SIZE);
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					//Read until the buffer is full
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Error reading chunk file " + file + ".", e);
+			}
+			if (buffer.hasRemaining()) {
+				throw new IllegalArgumentException("Chunk file " + file + " is truncated.");
+			}
+			buffer.flip();
+			buffer.get(chunk.symbols);
+			buffer.asLongBuffer().get(chunk.traversable);
+			chunksLoaded++;
+
+		} else {
+
+			Arrays.fill(chunk.symbols, (byte) Terrain.DEFAULT_SYMBOL);
+			generator.generate(chunkY, chunkX, chunk.symbols);
+			for (int row = 0; row < CHUNK_SIZE; row++) {
+				long word = 0;
+				for (int column = 0; column < CHUNK_SIZE; column++) {
+					if (Terrain.isTraversable((char) (chunk.symbols[row * CHUNK_SIZE + column] & 0xFF))) {
+						word |= 1L << column;
+					}
+				}
+				chunk.traversable[row] = word;
+			}
+			chunksGenerated++;
+
+		}
+
+		return chunk;
+
+	}
+
+	/*
+	 *  Helper method to save a chunk to the chunk store
+	 */
+	private void saveChunk(int chunkY, int chunkX, Chunk chunk) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(CHUNK_FILE_SIZE);
+		buffer.put(chunk.symbols);
+		buffer.asLongBuffer().put(chunk.traversable);
+		buffer.position(0);
+
+		Path file = chunkFile(chunkY, chunkX);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error writing chunk file " + file + ".", e);
+		}
+
+		chunk.changed = false;
+		chunksSaved++;
+
+	}
+
+	private Path chunkFile(int chunkY, int chunkX) {
+		return store.resolve(CHUNK_FILE_PREFIX + chunkY + "_" + chunkX + CHUNK_FILE_EXTENSION);
+	}
+
+	private static long keyOf(int chunkY, int chunkX) {
+		return ((long) chunkY << 32) | (chunkX & 0xFFFFFFFFL);
+	}
+
+}
@@ -9,7 +9,8 @@ public class Entity implements Renderable {
 	private int posY;
 	private int posX;
 	private char symbol;
-	
+	private long handle = EntityStore.NO_HANDLE;	//Handle in the EntityStore holding the entity (if any)
+
 	/*
 	 *  Default constructor:
 	 */
@@ -34,6 +35,13 @@ public class Entity implements Renderable {
 	public void render() {
 		System.out.print(symbol);
 	}
+
+	/*
+	 *  Renderable Interface method: writes the symbol into the frame buffer at 'index'
+	 */
+	public void render(char[] frame, int index) {
+		frame[index] = symbol;
+	}
 	
 	/*
 	 *  Method to check if entity at position (x,y). Returns true if at position.
@@ -79,7 +87,18 @@ public class Entity implements Renderable {
 	
 	public char getSymbol() {
 		return symbol;
-	}	
+	}
+
+	/*
+	 *  Store handle methods (used by EntityStore only):
+	 */
+	long getHandle() {
+		return handle;
+	}
+
+	void setHandle(long handle) {
+		this.handle = handle;
+	}
 	
 
 }
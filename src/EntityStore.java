@@ -0,0 +1,296 @@
+/**
+ * Class for EntityStore objects
+ * Holds a set of entities in one dense array, with O(1) add and remove:
+ * 	- Each entity is given a handle when it is added (a slot number plus the slot's generation).
+ * 		The slot maps to the entity's place in the dense array, so removing an entity simply moves
+ * 		the last entity into its place (swap-remove), and the slot is reused for later entities.
+ * 		The generation changes every time a slot is freed, so a stale handle is never mistaken
+ * 		for the entity which reused its slot. Handles are longs, with the generation in the top bits:
+ * 		a slot whose generation has run out (after 2^31 reuses) is retired rather than wrapped around.
+ * 	- The dense array is split into active entities (at the front) and inactive entities,
+ * 		so the active entities can be iterated on their own (see ActiveRegions).
+ * 		Entities are inactive when added.
+ * The order of the entities changes as entities are removed, activated or deactivated.
+ * An entity can only be in one store at a time (its handle is kept in the entity).
+ * Subclasses can keep their own per-entity data in parallel arrays (columns) indexed by dense index,
+ * 	by overriding the column methods, which are called whenever the dense array changes.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EntityStore<T extends Entity> {
+
+	public final static long NO_HANDLE = -1;
+
+	private final static int SLOT_BITS = 24;
+	private final static int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private final static int MAX_SLOTS = 1 << SLOT_BITS;
+	private final static int GENERATION_SHIFT = 32;	//Generation in the top bits of the handle (kept non-negative)
+	private final static int MAX_GENERATION = Integer.MAX_VALUE;
+	private final static int RETIRED = -1;			//Generation of a retired slot
+	private final static int INITIAL_CAPACITY = 16;
+
+	//Dense array of entities: [0, activeCount) are active, [activeCount, size) are inactive
+	private Entity[] entities;
+	private int[] slotOfIndex;		//Slot of the entity at each dense index
+	private int size;
+	private int activeCount;
+
+	//Slots: dense index of the entity in each slot (or the next free slot, for free slots)
+	private int[] indexOfSlot;
+	private int[] generation;
+	private int slotCount;
+	private int freeSlot;			//First free slot (-1 if none)
+
+	/*
+	 *  Constructor
+	 */
+	public EntityStore() {
+		this.entities = new Entity[INITIAL_CAPACITY];
+		this.slotOfIndex = new int[INITIAL_CAPACITY];
+		this.indexOfSlot = new int[INITIAL_CAPACITY];
+		this.generation = new int[INITIAL_CAPACITY];
+		this.freeSlot = -1;
+	}
+
+	/*
+	 *  Add entity (inactive), and return its handle
+	 */
+	public long add(T e) {
+
+		if (contains(e)) {
+			throw new IllegalArgumentException("Entity is already in the store.");
+		}
+
+		int slot;
+		if (freeSlot >= 0) {
+			slot = freeSlot;
+			freeSlot = indexOfSlot[slot];
+		} else {
+			if (slotCount == MAX_SLOTS) {
+				throw new IllegalStateException("Entity store is full (" + MAX_SLOTS + " entities).");
+			}
+			slot = slotCount++;
+			if (slot == indexOfSlot.length) {
+				indexOfSlot = Arrays.copyOf(indexOfSlot, slot * 2);
+				generation = Arrays.copyOf(generation, slot * 2);
+			}
+		}
+
+		if (size == entities.length) {
+			entities = Arrays.copyOf(entities, size * 2);
+			slotOfIndex = Arrays.copyOf(slotOfIndex, size * 2);
+			growColumns(size * 2);
+		}
+
+		place(e, slot, size++);
+		long handle = ((long) generation[slot] << GENERATION_SHIFT) | slot;
+		e.setHandle(handle);
+		return handle;
+
+	}
+
+	/*
+	 *  Remove entity. Returns false if it is not in the store.
+	 */
+	public boolean remove(T e) {
+
+		if (!contains(e)) return false;
+
+		int slot = slotOf(e.getHandle());
+		int index = indexOfSlot[slot];
+
+		//Keep the active entities together: fill the gap with the last active entity,
+		//	then fill the last active place with the last entity
+		if (index < activeCount) {
+			activeCount--;
+			moveIndex(activeCount, index);
+			index = activeCount;
+		}
+		size--;
+		moveIndex(size, index);
+		entities[size] = null;
+
+		//Free the slot (under a new generation, so the old handle is no longer valid),
+		//	unless its generations have run out: then the slot is retired (no handle matches it)
+		if (generation[slot] < MAX_GENERATION) {
+			generation[slot]++;
+			indexOfSlot[slot] = freeSlot;
+			freeSlot = slot;
+		} else {
+			generation[slot] = RETIRED;
+		}
+		e.setHandle(NO_HANDLE);
+		return true;
+
+	}
+
+	/*
+	 *  Returns true if the entity is in this store
+	 */
+	public boolean contains(T e) {
+		return get(e.getHandle()) == e;
+	}
+
+	/*
+	 *  Returns the entity with the given handle, or null if it has been removed
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long handle) {
+		if (handle < 0) return null;
+		int slot = slotOf(handle);
+		if (slot >= slotCount || generation[slot] != (int) (handle >>> GENERATION_SHIFT)) return null;
+		return (T) entities[indexOfSlot[slot]];
+	}
+
+	/*
+	 *  Active entity methods:
+	 */
+	public boolean isActive(T e) {
+		return contains(e) && indexOfSlot[slotOf(e.getHandle())] < activeCount;
+	}
+
+	public void activate(T e) {
+		if (!contains(e) || isActive(e)) return;
+		swapIndex(indexOfSlot[slotOf(e.getHandle())], activeCount++);
+	}
+
+	public void deactivate(T e) {
+		if (!isActive(e)) return;
+		swapIndex(indexOfSlot[slotOf(e.getHandle())], --activeCount);
+	}
+
+	/*
+	 *  Returns the dense index of the entity (which must be in the store)
+	 *  	Dense indexes change as entities are removed, activated or deactivated.
+	 */
+	protected int indexOf(T e) {
+		return indexOfSlot[slotOf(e.getHandle())];
+	}
+
+	/*
+	 *  Returns the entity at dense index 'index'
+	 */
+	@SuppressWarnings("unchecked")
+	protected T getAt(int index) {
+		return (T) entities[index];
+	}
+
+	/*
+	 *  Column methods, for subclasses keeping per-entity data in parallel arrays:
+	 *  	(Columns start with getCapacity() entries, and are grown to 'capacity' entries by growColumns.)
+	 */
+	protected int getCapacity() {
+		return entities.length;
+	}
+
+	protected void growColumns(int capacity) {
+		//No columns by default
+	}
+
+	protected void copyColumns(int from, int to) {
+		//No columns by default
+	}
+
+	protected void swapColumns(int i, int j) {
+		//No columns by default
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	/*
+	 *  Returns all entities (read-only view, in store order)
+	 */
+	public List<T> getAll() {
+		return new View(false);
+	}
+
+	/*
+	 *  Returns the active entities (read-only view, in store order)
+	 */
+	public List<T> getActive() {
+		return new View(true);
+	}
+
+	/*
+	 *  Read-only view of the front of the dense array
+	 */
+	private class View extends AbstractList<T> {
+
+		private boolean activeOnly;
+
+		View(boolean activeOnly) {
+			this.activeOnly = activeOnly;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Index " + index + " out of range (size " + size() + ").");
+			}
+			return (T) entities[index];
+		}
+
+		@Override
+		public int size() {
+			return activeOnly ? activeCount : size;
+		}
+
+	}
+
+	/*
+	 *  Helper method to return the slot of a handle
+	 */
+	private static int slotOf(long handle) {
+		return (int) handle & SLOT_MASK;
+	}
+
+	/*
+	 *  Helper method to put entity e at dense index 'index', in slot 'slot'
+	 */
+	private void place(Entity e, int slot, int index) {
+		entities[index] = e;
+		slotOfIndex[index] = slot;
+		indexOfSlot[slot] = index;
+	}
+
+	/*
+	 *  Helper method to move the entity at dense index 'from' to dense index 'to'
+	 */
+	private void moveIndex(int from, int to) {
+		if (from == to) return;
+		place(entities[from], slotOfIndex[from], to);
+		copyColumns(from, to);
+	}
+
+	/*
+	 *  Helper method to swap the entities at dense indexes i and j
+	 */
+	private void swapIndex(int i, int j) {
+		if (i == j) return;
+		Entity e = entities[i];
+		int slot = slotOfIndex[i];
+		place(entities[j], slotOfIndex[j], i);
+		place(e, slot, j);
+		swapColumns(i, j);
+	}
+
+}
@@ -0,0 +1,337 @@
+/**
+ * Class for FlowField objects
+ * Distance (in moves) from every map tile to a source tile (the player), over the traversable
+ * 	tiles. Shared by every monster: a monster chases the player by stepping to a neighbouring
+ * 	tile one move closer, which routes it around walls and water.
+ * Distances are only kept for tiles within 'radius' moves of the source (the aggro radius),
+ * 	so only the (2 * radius + 1) x (2 * radius + 1) window of tiles around the source is stored.
+ * 	The window is stored wrapped around (tile (y,x) is kept in slot (y mod side, x mod side)),
+ * 	so it follows the source without moving any data.
+ * The field is repaired incrementally when the source moves one tile or a tile changes,
+ * 	so the cost of an update is proportional to the number of tiles whose distance changes:
+ * 	1. Every tile whose distance may have become too small (it was reached through a tile that
+ * 		changed) is checked, in order of distance, and invalidated if it no longer has a valid
+ * 		neighbour one move closer to the source.
+ * 	2. The invalidated tiles (and any tiles which may have become closer) are settled again
+ * 		by a breadth-first search from their valid neighbours.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.Arrays;
+
+public class FlowField {
+
+	public final static int UNREACHABLE = -1;
+
+	//Distance stored for tiles which are unreachable, or further than 'radius' moves from the source:
+	private final static int FAR = Integer.MAX_VALUE;
+
+	private Map map;
+	private int radius;
+	private int side;	//Window side (2 * radius + 1)
+
+	private int sourceY;
+	private int sourceX;
+	private boolean computed;
+
+	//Distances by window slot (see slotOf)
+	private int[] distance;
+
+	//Queues of window slots by distance (0..radius), used by both repair passes:
+	private int[][] buckets;
+	private int[] bucketSizes;
+
+	//Slots invalidated by the first pass, or which may have become closer, to settle in the second pass:
+	private int[] pending;
+	private int pendingSize;
+
+	//Neighbour offsets, in the order monsters prefer to step (left, right, up, down):
+	private final static int[] STEP_X = {-1, 1, 0, 0};
+	private final static int[] STEP_Y = {0, 0, -1, 1};
+
+	/*
+	 *  Constructor
+	 */
+	public FlowField(Map map, int radius) {
+
+		this.map = map;
+		this.radius = radius;
+		this.side = 2 * radius + 1;
+		this.distance = new int[side * side];
+		this.buckets = new int[radius + 1][16];
+		this.bucketSizes = new int[radius + 1];
+		this.pending = new int[16];
+		this.computed = false;
+
+	}
+
+	/*
+	 *  Compute the distance of every tile within the radius from the source tile (sourceY, sourceX)
+	 *  	from scratch
+	 */
+	public void compute(int sourceY, int sourceX) {
+
+		this.sourceY = sourceY;
+		this.sourceX = sourceX;
+		this.computed = true;
+		Arrays.fill(distance, FAR);
+
+		pendingSize = 0;
+		addPending(slotOf(sourceY, sourceX));
+		settlePending();
+
+	}
+
+	/*
+	 *  Move the source to (sourceY, sourceX)
+	 *  A move of one tile is repaired incrementally, any other move computes the field again.
+	 */
+	public void setSource(int sourceY, int sourceX) {
+
+		if (!computed || Math.abs(sourceY - this.sourceY) + Math.abs(sourceX - this.sourceX) != 1) {
+			if (!computed || sourceY != this.sourceY || sourceX != this.sourceX) compute(sourceY, sourceX);
+			return;
+		}
+
+		int dy = sourceY - this.sourceY;
+		int dx = sourceX - this.sourceX;
+		int oldSource = slotOf(this.sourceY, this.sourceX);
+		pendingSize = 0;
+
+		//Tiles leaving the window (the row or column furthest behind the move) become unreachable.
+		//	Their neighbours inside the new window may have been reached through them, so are checked.
+		//	The tiles entering the window reuse the same slots, and are settled in the second pass.
+		for (int i = -radius; i <= radius; i++) {
+			int y = (dy == 0) ? this.sourceY + i : this.sourceY - dy * radius;
+			int x = (dx == 0) ? this.sourceX + i : this.sourceX - dx * radius;
+			int slot = slotOf(y, x);
+			if (distance[slot] != FAR) {
+				distance[slot] = FAR;
+				queueCheck(slotOf(y + dy, x + dx));
+			}
+			addPending(slot);
+		}
+
+		this.sourceY = sourceY;
+		this.sourceX = sourceX;
+
+		//The old source tile is no longer the source, so it (and every tile reached through it) is checked:
+		queueCheck(oldSource);
+		invalidateUnsupported();
+
+		//The new source tile is settled at distance 0 with the invalidated tiles:
+		addPending(slotOf(sourceY, sourceX));
+		settlePending();
+
+	}
+
+	/*
+	 *  Repair the field after the terrain of tile (y,x) changed (eg. it became a wall or was cleared)
+	 */
+	public void updateTile(int y, int x) {
+
+		if (!computed || !inWindow(y, x)) return;
+
+		int slot = slotOf(y, x);
+		pendingSize = 0;
+
+		//If the tile was blocked, it (and every tile reached through it) is checked:
+		queueCheck(slot);
+		invalidateUnsupported();
+
+		//If the tile was cleared, it is settled (and any tiles it brings closer with it):
+		addPending(slot);
+		settlePending();
+
+	}
+
+	/*
+	 *  Returns the distance (in moves) from (y,x) to the source, or UNREACHABLE
+	 *  	if the tile is not within the radius (or cannot reach the source at all)
+	 */
+	public int getDistance(int y, int x) {
+		if (!computed || !inWindow(y, x)) return UNREACHABLE;
+		int d = distance[slotOf(y, x)];
+		return (d == FAR) ? UNREACHABLE : d;
+	}
+
+	/*
+	 *  Returns the direction (index into the step offsets: 0 = left, 1 = right, 2 = up, 3 = down)
+	 *  	of a neighbouring tile one move closer to the source, or -1 if there is none
+	 *  	(the tile is the source itself, or is not within the radius)
+	 */
+	public int getStepTowardsSource(int y, int x) {
+
+		int d = getDistance(y, x);
+		if (d <= 0) return -1;
+
+		for (int i = 0; i < STEP_X.length; i++) {
+			if (getDistance(y + STEP_Y[i], x + STEP_X[i]) == d - 1) return i;
+		}
+		return -1;
+
+	}
+
+	/*
+	 *  Helper methods to convert a direction from getStepTowardsSource into an (x,y) offset
+	 */
+	public static int getStepX(int direction) {
+		return STEP_X[direction];
+	}
+
+	public static int getStepY(int direction) {
+		return STEP_Y[direction];
+	}
+
+	public int getRadius() {
+		return radius;
+	}
+
+	/*
+	 *  First repair pass:
+	 *  Check the queued tiles in order of distance. A tile (other than the source) keeps its distance
+	 *  	only if it is traversable and has a neighbour with a smaller (still valid) distance.
+	 *  	Otherwise it is invalidated, and its neighbours one move further away are checked in turn.
+	 */
+	private void invalidateUnsupported() {
+
+		int sourceSlot = slotOf(sourceY, sourceX);
+
+		for (int d = 0; d <= radius; d++) {
+			for (int i = 0; i < bucketSizes[d]; i++) {
+
+				int slot = buckets[d][i];
+				if (distance[slot] != d || slot == sourceSlot) continue;
+
+				int y = yOf(slot);
+				int x = xOf(slot);
+				if (isOpen(y, x) && hasCloserNeighbour(y, x, d)) continue;
+
+				distance[slot] = FAR;
+				addPending(slot);
+				for (int n = 0; n < STEP_X.length; n++) {
+					int ny = y + STEP_Y[n];
+					int nx = x + STEP_X[n];
+					if (inWindow(ny, nx) && distance[slotOf(ny, nx)] == d + 1) queueCheck(slotOf(ny, nx));
+				}
+
+			}
+			bucketSizes[d] = 0;
+		}
+
+	}
+
+	/*
+	 *  Second repair pass:
+	 *  Give each pending tile the distance one move further than its closest valid neighbour,
+	 *  	then spread any distances which became smaller to the neighbouring tiles (breadth-first).
+	 */
+	private void settlePending() {
+
+		int sourceSlot = slotOf(sourceY, sourceX);
+
+		for (int p = 0; p < pendingSize; p++) {
+
+			int slot = pending[p];
+			int y = yOf(slot);
+			int x = xOf(slot);
+			if (!inWindow(y, x)) continue;
+
+			if (slot == sourceSlot) {
+				queue(slot, 0);
+				continue;
+			}
+			if (!isOpen(y, x)) continue;
+
+			int closest = FAR;
+			for (int n = 0; n < STEP_X.length; n++) {
+				int ny = y + STEP_Y[n];
+				int nx = x + STEP_X[n];
+				if (inWindow(ny, nx)) closest = Math.min(closest, distance[slotOf(ny, nx)]);
+			}
+			if (closest < radius && closest + 1 < distance[slot]) queue(slot, closest + 1);
+
+		}
+		pendingSize = 0;
+
+		for (int d = 0; d <= radius; d++) {
+			for (int i = 0; i < bucketSizes[d]; i++) {
+
+				int slot = buckets[d][i];
+				if (d >= distance[slot]) continue;
+				distance[slot] = d;
+				if (d == radius) continue;
+
+				int y = yOf(slot);
+				int x = xOf(slot);
+				for (int n = 0; n < STEP_X.length; n++) {
+					int ny = y + STEP_Y[n];
+					int nx = x + STEP_X[n];
+					if (inWindow(ny, nx) && d + 1 < distance[slotOf(ny, nx)] && isOpen(ny, nx)) {
+						queue(slotOf(ny, nx), d + 1);
+					}
+				}
+
+			}
+			bucketSizes[d] = 0;
+		}
+
+	}
+
+	/*
+	 *  Helper methods for the repair passes:
+	 */
+	private boolean hasCloserNeighbour(int y, int x, int d) {
+		for (int n = 0; n < STEP_X.length; n++) {
+			int ny = y + STEP_Y[n];
+			int nx = x + STEP_X[n];
+			if (inWindow(ny, nx) && distance[slotOf(ny, nx)] < d) return true;
+		}
+		return false;
+	}
+
+	private void queueCheck(int slot) {
+		if (distance[slot] != FAR) queue(slot, distance[slot]);
+	}
+
+	private void queue(int slot, int d) {
+		if (bucketSizes[d] == buckets[d].length) {
+			buckets[d] = Arrays.copyOf(buckets[d], 2 * buckets[d].length);
+		}
+		buckets[d][bucketSizes[d]++] = slot;
+	}
+
+	private void addPending(int slot) {
+		if (pendingSize == pending.length) {
+			pending = Arrays.copyOf(pending, 2 * pending.length);
+		}
+		pending[pendingSize++] = slot;
+	}
+
+	/*
+	 *  Helper methods to convert between tiles and window slots:
+	 *  Tile (y,x) is kept in slot (y mod side) * side + (x mod side), so every tile in the window
+	 *  	around the current source has its own slot, and a slot converts back to its tile.
+	 */
+	private int slotOf(int y, int x) {
+		return Math.floorMod(y, side) * side + Math.floorMod(x, side);
+	}
+
+	private int yOf(int slot) {
+		return sourceY - radius + Math.floorMod(slot / side - (sourceY - radius), side);
+	}
+
+	private int xOf(int slot) {
+		return sourceX - radius + Math.floorMod(slot % side - (sourceX - radius), side);
+	}
+
+	private boolean inWindow(int y, int x) {
+		return Math.abs(y - sourceY) <= radius && Math.abs(x - sourceX) <= radius;
+	}
+
+	private boolean isOpen(int y, int x) {
+		return y >= 0 && y < map.getHeight() && x >= 0 && x < map.getWidth() && map.isTraversable(y, x);
+	}
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Class for FrameBuffer objects
+ * Holds one whole rendered frame of the map, so it can be written out in a single call.
+ * In incremental mode, only the cells that changed since the previous frame are written,
+ * 	using ANSI cursor movement sequences to reach them.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.PrintStream;
+import java.util.BitSet;
+
+public class FrameBuffer {
+
+	private int height;
+	private int width;
+	private int rowLength;
+	private char[] cells;
+
+	//Incremental (diff) rendering state:
+	private boolean incremental;
+	private char[] previous;		//Frame as last written to the terminal (null if none yet)
+	private BitSet dirty;			//Cells (y * width + x) which may have changed since last frame
+	private StringBuilder changes;	//Reusable buffer for the escape sequences of one diff
+	private boolean lineInput;		//True if a line is typed (and Enter pressed) after each frame
+
+	private final static String LINE_SEPARATOR = System.lineSeparator();
+	private final static String ESC = "\u001B[";
+
+	/*
+	 *  Constructor
+	 */
+	public FrameBuffer(int height, int width) {
+
+		this.height = height;
+		this.width = width;
+		this.rowLength = width + LINE_SEPARATOR.length();
+
+		//Each row of glyphs is followed by a line separator, and the frame ends with a blank line:
+		cells = new char[(height + 1) * rowLength - width];
+		for (int i = 0; i <= height; i++) {
+			LINE_SEPARATOR.getChars(0, LINE_SEPARATOR.length(), cells, i * rowLength + (i < height ? width : 0));
+		}
+
+		this.incremental = false;
+		this.lineInput = true;
+		this.dirty = new BitSet(height * width);
+		this.changes = new StringBuilder();
+
+	}
+
+	/*
+	 *  Write the glyph of a Renderable object into the frame at (y,x)
+	 */
+	public void draw(int y, int x, Renderable r) {
+		r.render(cells, y * rowLength + x);
+	}
+
+	/*
+	 *  Write the frame to the output stream in one call
+	 *  In incremental mode (once a full frame has been written), only the changed cells are written.
+	 */
+	public void flush(PrintStream out) {
+
+		if (needsFullRedraw()) {
+			out.print(cells);
+			if (incremental) previous = cells.clone();
+		} else {
+			out.print(buildChanges());
+		}
+		out.flush();
+		dirty.clear();
+
+	}
+
+	/*
+	 *  Turn incremental (diff) rendering on or off
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		this.previous = null;
+	}
+
+	/*
+	 *  Set whether a line is typed after each frame (true, the default), leaving the cursor on the line
+	 *  	below the prompt, or moves are read as single keys without echo (false: real-time mode),
+	 *  	leaving the cursor where the last frame left it.
+	 */
+	public void setLineInput(boolean lineInput) {
+		this.lineInput = lineInput;
+	}
+
+	/*
+	 *  Returns true if the next frame must be drawn and written in full
+	 */
+	public boolean needsFullRedraw() {
+		return !incremental || previous == null;
+	}
+
+	/*
+	 *  Forces the next frame to be written in full, below any text printed since the last frame
+	 *  Must be called whenever anything other than the map is printed (eg. battle messages),
+	 *  	since the cursor is then no longer where the diff expects it to be.
+	 */
+	public void invalidate() {
+		previous = null;
+	}
+
+	/*
+	 *  Mark the cell at (y,x) as possibly changed (eg. an entity moved into or out of it)
+	 */
+	public void markDirty(int y, int x) {
+		if (y >= 0 && y < height && x >= 0 && x < width) {
+			dirty.set(y * width + x);
+		}
+	}
+
+	/*
+	 *  Mark every cell as possibly changed
+	 */
+	public void markAllDirty() {
+		dirty.set(0, height * width);
+	}
+
+	/*
+	 *  Returns the first dirty cell at or after cell number 'from' (y * width + x), or -1 if none
+	 *  Used to iterate over the cells that need to be redrawn.
+	 */
+	public int nextDirtyCell(int from) {
+		return dirty.nextSetBit(from);
+	}
+
+	/*
+	 *  Helper method to build the escape sequences and glyphs for all changed cells
+	 *  The cursor is expected at the start of the line below the input prompt,
+	 *  	ie. two lines below the blank line that follows the frame
+	 *  	(or, without line input, at the start of the prompt line itself).
+	 *  It is left at the start of the (cleared) prompt line, ready for the next prompt.
+	 */
+	private StringBuilder buildChanges() {
+
+		changes.setLength(0);
+		int cursorRow = lineInput ? height + 2 : height + 1;
+
+		for (int c = dirty.nextSetBit(0); c >= 0; c = dirty.nextSetBit(c + 1)) {
+
+			int y = c / width;
+			int x = c % width;
+			int index = y * rowLength + x;
+			if (cells[index] == previous[index]) continue;
+
+			moveToRow(cursorRow, y);
+			cursorRow = y;
+			changes.append(ESC).append(x + 1).append('G').append(cells[index]);
+			previous[index] = cells[index];
+
+		}
+
+		moveToRow(cursorRow, height + 1);
+		changes.append('\r').append(ESC).append('K');
+		return changes;
+
+	}
+
+	/*
+	 *  Helper method to append a relative cursor movement from one row to another
+	 */
+	private void moveToRow(int from, int to) {
+		if (to < from) changes.append(ESC).append(from - to).append('A');
+		if (to > from) changes.append(ESC).append(to - from).append('B');
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+}
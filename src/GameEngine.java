@@ -4,10 +4,15 @@
  *
  */
 
+import java.util.Random;
 import java.util.Scanner;
-import java.util.ArrayList;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.io.File;
+import java.io.InputStream;
 import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.FileOutputStream;
 
@@ -16,8 +21,30 @@ public class GameEngine {
 	private World world;
 	private Player player;
 	private Monster defaultMonster;
+	private LevelCache levelCache;
 	
-	private static Scanner keyboard = new Scanner(System.in);
+	//Input and output of this game (the console, unless given otherwise):
+	private Scanner keyboard;
+	private InputStream in;
+	private PrintStream out;
+	
+	//What the next line of input is for (the game is played a line at a time, see handleLine):
+	private enum State {
+		MENU,			//A main menu command
+		PLAYER_NAME,	//The name of the player being created
+		MONSTER_NAME,	//The name, health and damage of the monster being created
+		MONSTER_HEALTH,
+		MONSTER_DAMAGE,
+		PRESS_ENTER,	//Any line, to return to the main menu
+		IN_WORLD,		//A move in the world being played
+		EXITED			//Nothing: the game has ended
+	}
+	private State state = State.MENU;
+	private String newMonsterName;	//Monster being created
+	private int newMonsterHealth;
+	private ChunkedMap exploreMap;	//Map being explored, deleted when the world ends (null if none)
+	private boolean statsAvailable = true;
+	private boolean saveAvailable = true;
 	
 	private static final int DEFAULT_PLAYER_POSX = 1;
 	private static final int DEFAULT_PLAYER_POSY = 1;
@@ -28,10 +55,40 @@ public class GameEngine {
 	
 	private static final String PLAYER_DATA_FILE_NAME = "player.dat";
 	
+	//Number of parsed levels kept in memory for replay (set with -Drogue.levelcache.size):
+	private static final int LEVEL_CACHE_SIZE = Integer.getInteger("rogue.levelcache.size", 8);
+	
+	//Display settings (set as system properties, eg. java -Drogue.ansi=true GameEngine):
+	private static final boolean ANSI_RENDERING = Boolean.getBoolean("rogue.ansi");
+	private static final int VIEWPORT_HEIGHT = Integer.getInteger("rogue.viewport.height", 0);
+	private static final int VIEWPORT_WIDTH = Integer.getInteger("rogue.viewport.width", 0);
+	
+	//Explore mode: a chunked map generated as the player explores it, with the warp stone
+	//	within EXPLORE_WARP_DISTANCE tiles (in each direction) of the start, shown through a viewport:
+	private static final int EXPLORE_MAP_SIZE = 1 << 20;
+	private static final int EXPLORE_WARP_DISTANCE = 200;
+	private static final int EXPLORE_VIEWPORT_HEIGHT = 20;
+	private static final int EXPLORE_VIEWPORT_WIDTH = 60;
+	
+	//Monster pathfinding radius in moves (0 = monsters step greedily, as in the original game):
+	private static final int PATHFINDING_RADIUS = Integer.getInteger("rogue.pathfinding.radius", 0);
+	
+	//Real-time mode: the world advances one turn every REALTIME_TICK_MILLIS ms, with moves typed
+	//	as single keys (w, a, s, d, or q for home) on the console (0 = off: one turn per line typed):
+	private static final int REALTIME_TICK_MILLIS = Integer.getInteger("rogue.realtime.tick", 0);
+	
+	//Time taken to load (or fetch from the level cache) and create each world (see Metrics):
+	private static final LatencyHistogram LEVEL_LOAD_TIME = Metrics.histogram("engine.levelLoad");
+	
 	public static void main(String[] args) {
 				
-		// Create an instance of the game engine
-		GameEngine gameEngine = new GameEngine();
+		// Export the game metrics via JMX (in the background, as starting JMX takes a while)
+		Thread export = new Thread(Metrics::exportToJmx, "metrics-export");
+		export.setDaemon(true);
+		export.start();
+		
+		// Create an instance of the game engine, playing on the console
+		GameEngine gameEngine = new GameEngine(System.in, System.out);
 		
 		// Run the main game loop
 		gameEngine.runMainMenuLoop();
@@ -39,70 +96,215 @@ public class GameEngine {
 	}
 	
 	/*
-	 *  Logic for running the main game loop
+	 *  Constructor
+	 *  Each game engine has its own input and output, so several games can run side by side.
+	 */
+	public GameEngine(InputStream in, PrintStream out) {
+		
+		this(out);
+		
+		//The Scanner only reads more input when it is ready to (never because more has been typed),
+		//	so on a terminal, which gives one line per read, input typed ahead stays on the terminal
+		//	for KeyboardInput to read in real-time mode:
+		this.keyboard = new Scanner(new FilterInputStream(in) {
+			@Override
+			public int available() {
+				return 0;
+			}
+		});
+		this.in = in;
+		
+	}
+	
+	/*
+	 *  Constructor (overloaded)
+	 *  Used for a game without an input stream, which is given its input a line at a time
+	 *  	with start() and handleLine() instead of runMainMenuLoop() (eg. by a GameServer session).
+	 */
+	public GameEngine(PrintStream out) {
+		
+		this(out, new LevelCache(LEVEL_CACHE_SIZE));
+		
+	}
+	
+	/*
+	 *  Constructor (overloaded)
+	 *  Used for a game which shares its level cache with other games (eg. every GameServer session
+	 *  	shares the server's), given its input as for GameEngine(PrintStream).
 	 */
-	private void runMainMenuLoop() {
+	public GameEngine(PrintStream out, LevelCache levelCache) {
+		
+		this.out = out;
+		this.levelCache = levelCache;
+		
+	}
+	
+	/*
+	 *  Logic for running the main game loop, reading lines from this game's input
+	 *  	(Returns when the player exits, or throws NoSuchElementException if the input ends first)
+	 */
+	public void runMainMenuLoop() {
+		
+		start();
+		try {
+			while (handleLine(keyboard.nextLine())) {
+				//Each line is handled in turn, until the player exits
+			}
+		} finally {
+			close();
+		}
+		
+	}
+	
+	/*
+	 *  Start the game: display the main menu, and prompt for the first command
+	 */
+	public void start() {
 		
 		displayMainMenu();
-		boolean inGame = true;	
+		out.print("> ");
 		
-		while (inGame) {
+	}
+	
+	/*
+	 *  Handle one line of input: a main menu command, the answer to a prompt, or a move in the world
+	 *  	(Only ever waits for input while playing in real-time mode, see runWorld.)
+	 *  Returns false once the player has exited (and no more lines are wanted).
+	 */
+	public boolean handleLine(String line) {
+		
+		switch (state) {
+		
+			case MENU:
+				
+				handleCommand(line.split(" "));
+				break;
+				
+			case PLAYER_NAME:
+				
+				createPlayer(line);
+				break;
+				
+			case MONSTER_NAME:
+			case MONSTER_HEALTH:
+			case MONSTER_DAMAGE:
+				
+				createMonster(line);
+				break;
+				
+			case PRESS_ENTER:
+				
+				displayMainMenu();
+				state = State.MENU;
+				break;
+				
+			case IN_WORLD:
+				
+				if (world.playMove(line) != null) endWorld();
+				break;
+				
+			default:
+				
+				break;
 			
-			System.out.print("> ");
-			String[] userInput = keyboard.nextLine().split(" ");
-			switch (userInput[0]) {
+		}
+		
+		if (state == State.MENU) out.print("> ");
+		return state != State.EXITED;
+		
+	}
+	
+	/*
+	 *  End the game, if it has not ended already: delete the map being explored, if any
+	 *  	(eg. when a GameServer session's connection closes mid-game)
+	 */
+	public void close() {
+		
+		deleteExploreMap();
+		state = State.EXITED;
+		
+	}
+	
+	/*
+	 *  Turn the 'stats' command on or off (eg. off for GameServer sessions, as the metrics are
+	 *  	shared by every game in the JVM, so one player should not see or reset the others')
+	 */
+	public void setStatsAvailable(boolean available) {
+		this.statsAvailable = available;
+	}
+	
+	/*
+	 *  Turn the 'save' and 'load' commands on or off (eg. off for GameServer sessions, as the player
+	 *  	data file is shared by every game in the working directory)
+	 */
+	public void setSaveAvailable(boolean available) {
+		this.saveAvailable = available;
+	}
+	
+	/*
+	 *  Helper method to carry out a main menu command (called from handleLine)
+	 */
+	private void handleCommand(String[] userInput) {
+		
+		switch (userInput[0]) {
+		
+			case "help":
+				
+				displayHelpMsg();
+				break;
+				
+			case "commands":
+				
+				displayCommandsMsg();
+				break;
+				
+			case "player":
+				
+				optionPlayer();
+				break;
+				
+			case "monster":
+				
+				out.print("Monster name: ");
+				state = State.MONSTER_NAME;
+				break;
+				
+			case "start":
+				
+				optionStart(userInput);
+				break;
 			
-				case "help":
-					
-					displayHelpMsg();
-					break;
-					
-				case "commands":
-					
-					displayCommandsMsg();
-					break;
-					
-				case "player":
-					
-					optionPlayer();
-					break;
-					
-				case "monster":
-					
-					createMonster();
-					break;
-					
-				case "start":
-					
-					optionStart(userInput);
-					break;
+			case "explore":
 				
-				case "save":
-					
-					save();
-					break;
+				optionExplore(userInput);
+				break;
+			
+			case "save":
 				
-				case "load":
-					
-					load();
-					break;
-					
-				case "exit":
-
-					inGame = false;
-					break;
-					
-				default:
-					
-					displayDefaultMsg();
-					break;
+				save();
+				break;
 			
-			}
+			case "stats":
+				
+				optionStats(userInput);
+				break;
 			
-			if (!inGame) {
+			case "load":
+				
+				load();
+				break;
+				
+			case "exit":
+
 				displayExitMsg();
-			}
-			
+				state = State.EXITED;
+				break;
+				
+			default:
+				
+				displayDefaultMsg();
+				break;
+		
 		}
 		
 	}
@@ -113,7 +315,8 @@ public class GameEngine {
 	private void optionPlayer() {
 		
 		if (player == null) {
-			createPlayer();
+			out.println("What is your character's name?");
+			state = State.PLAYER_NAME;
 		} else {
 			displayPlayerDetails();
 		}					
@@ -129,102 +332,95 @@ public class GameEngine {
 		
 		if (player == null) {
 			displayNotFound("player");	
+			pressEnterToReturn();
 			
-		} else {
+		} else if (userInput.length == 1) {
+			startNoFile(); 
+			//This method directs to runWorld() (based on default world)
 			
-			if (userInput.length == 1) {
-				startNoFile(); 
-				//This method directs to world.runWorld() (based on default world)
-				
-			} else if (userInput.length == 2) {
-				startFromFile(userInput[1]); 
-				//This method directs to world.runWorld() (based on loaded world)
-			
-			} else if (userInput.length > 2) {
-				displayDefaultMsg();
-				return;
-				
-			}
-			
-			//Upon returning from game, any player attack bonuses received are reset
-			player.resetBonus();
+		} else if (userInput.length == 2) {
+			startFromFile(userInput[1]); 
+			//This method directs to runWorld() (based on loaded world)
+		
+		} else {
+			displayDefaultMsg();
 			
 		}
 		
-		pressEnterToReturn();
-		
 	}
 
 	/*
-	 *  Method to create player (called from OptionPlayer)
+	 *  Method to create player, with the name typed after the prompt in optionPlayer (called from handleLine)
 	 */
-	private void createPlayer() {
-		
-		System.out.println("What is your character's name?");
+	private void createPlayer(String playerName) {
 		
-		String playerName;
-		
-		try {
-			playerName = keyboard.nextLine();
-			if (playerName.length() == 0) throw new Exception();
-		} catch (Exception e) {
-			System.out.println("Error. Player must have a valid name. Please type 'player' to start again.\n");
+		state = State.MENU;
+		if (playerName.length() == 0) {
+			out.println("Error. Player must have a valid name. Please type 'player' to start again.\n");
 			return;
 		}
 		
 		player = new Player(playerName);
 		
-		System.out.println("Player '" + player.getName() + "' created.");
-		System.out.println();
+		out.println("Player '" + player.getName() + "' created.");
+		out.println();
 		
 		pressEnterToReturn();
 		
 	}
 	
 	/*
-	 *  Method to create monster (called from MainMenuLoop)
+	 *  Method to create monster, a line at a time: its name, health and damage, each typed
+	 *  	after a prompt (the first from the 'monster' command) (called from handleLine)
 	 */
-	private void createMonster() {
+	private void createMonster(String line) {
 		
-		System.out.print("Monster name: ");
-		String monsterName;
-		try {
-			monsterName = keyboard.nextLine();
-			if (monsterName.length() == 0) throw new Exception(); //Checks name length is not zero
-		} catch (Exception e) {
-			System.out.println("Error. Monster must have a valid name. Please type 'monster' to start again.\n");
-			return;
-		}
-				
-		System.out.print("Monster health: ");
-		int maxHealth;
-		//Check if next input is an integer. If not, display error message and return:
-		try {
-			maxHealth = Integer.parseInt(keyboard.nextLine()); 
-		} catch (Exception e) {
-			System.out.println("Error. Monster Health needs to be an integer. Please type 'monster' to start again.\n");
-			return;
-		}
-		
-		System.out.print("Monster damage: ");
-		int attackDamage;
-		//Check if next input is an integer. If not, display error message and return:
-		try {
-			attackDamage = Integer.parseInt(keyboard.nextLine()); 
-		} catch (Exception e) {
-			System.out.println("Error. Attack Damage needs to be an integer. Please type 'monster' to start again.\n");
-			return;
+		if (state == State.MONSTER_NAME) {
+			
+			if (line.length() == 0) { //Checks name length is not zero
+				out.println("Error. Monster must have a valid name. Please type 'monster' to start again.\n");
+				state = State.MENU;
+				return;
+			}
+			newMonsterName = line;
+			out.print("Monster health: ");
+			state = State.MONSTER_HEALTH;
+			
+		} else if (state == State.MONSTER_HEALTH) {
+			
+			//Check if input is an integer. If not, display error message and return:
+			try {
+				newMonsterHealth = Integer.parseInt(line); 
+			} catch (NumberFormatException e) {
+				out.println("Error. Monster Health needs to be an integer. Please type 'monster' to start again.\n");
+				state = State.MENU;
+				return;
+			}
+			out.print("Monster damage: ");
+			state = State.MONSTER_DAMAGE;
+			
+		} else {
+			
+			//Check if input is an integer. If not, display error message and return:
+			int attackDamage;
+			try {
+				attackDamage = Integer.parseInt(line); 
+			} catch (NumberFormatException e) {
+				out.println("Error. Attack Damage needs to be an integer. Please type 'monster' to start again.\n");
+				state = State.MENU;
+				return;
+			}
+			
+			//Create new monster based on above inputs:
+			defaultMonster = new Monster(newMonsterName, newMonsterHealth, attackDamage);
+			
+			out.println("Monster '" + defaultMonster.getName() + "' created.");
+			out.println();
+			
+			pressEnterToReturn();
+			
 		}
 		
-		
-		//Create new monster based on above inputs:
-		defaultMonster = new Monster(monsterName, maxHealth, attackDamage);
-		
-		System.out.println("Monster '" + defaultMonster.getName() + "' created.");
-		System.out.println();
-		
-		pressEnterToReturn();
-		
 	}
 	
 	/*
@@ -235,6 +431,7 @@ public class GameEngine {
 		//Check if default monster exists, if not, return:
 		if (defaultMonster == null) {		
 			displayNotFound("monster");
+			endWorld();
 			return;
 		}
 		
@@ -247,9 +444,10 @@ public class GameEngine {
 		//Create new world with defaults:
 		world = new World (player, DEFAULT_MAP_HEIGHT, DEFAULT_MAP_WIDTH);
 		world.addMonster(defaultMonster);
+		applyWorldSettings();
 		
 		//Run new world just created:
-		world.runWorld(keyboard);
+		runWorld();
 		
 	}
 	
@@ -258,153 +456,217 @@ public class GameEngine {
 	 */
 	private void startFromFile(String s) {
 		
-		String filename = s + ".dat";
-		ArrayList<String> fileData = null;
+		//Binary level files are named with their .lvl extension, otherwise <name>.dat is used:
+		String filename = s.endsWith(BinaryLevelFormat.FILE_EXTENSION) ? s : s + ".dat";
 		
-		//Try open file and read file data into ArrayList:
+		//Try open the map file (or find it in the level cache) and load new world with its attributes:
+		long time = Metrics.start();
 		try {
-			fileData = readIn(filename);	
+			world = levelCache.getLevel(filename).createWorld(player);
+			Metrics.lap(LEVEL_LOAD_TIME, time);
 		} catch (GameLevelNotFoundException e) {
-			System.out.println(e.getMessage());
-			System.out.println();
+			out.println(e.getMessage());
+			out.println();
+			endWorld();
 			return;
-		}
-	
-		//Try process map file data and load new world with those attributes:
-		try {
-			updateWorldFromFileData(fileData);
 		} catch (Exception e) {
-			System.out.println("The following error occured while loading the file:");
-			System.out.println(e.getMessage());
+			out.println("The following error occured while loading the file:");
+			out.println(e.getMessage());
+			endWorld();
 			return;
 		}
 		
+		applyWorldSettings();
+		
 		//Reset player health when starting new game
 		//	(carried over from Assignment 1 specs (and not contradicted in Assignment 2 specs))
 		player.toFullHealth();
 				
 		//Run world just updated from the file:
-		world.runWorld(keyboard);
+		runWorld();
 		
 	}
 	
 	/*
-	 *  Helper method to open map file and read data into ArrayList (called from StartFromFile)
+	 *  Method to start a world on a chunked map, generated from a seed (called from MainMenuLoop)
+	 *  The map is far larger than the heap: only the chunks around the player are kept in memory,
+	 *  	and the chunks are stored in a temporary directory which is deleted after the game.
 	 */
-	private ArrayList<String> readIn(String filename)
-		throws GameLevelNotFoundException {
+	private void optionExplore(String[] userInput) {
 		
-		ArrayList<String> fileData = new ArrayList<String>();		
+		if (player == null) {
+			displayNotFound("player");
+			pressEnterToReturn();
+			return;
+		}
 		
+		long seed;
 		try {
-
-			File file = new File(filename);
-			Scanner in = new Scanner(file);
-			
-			while (in.hasNextLine()) {
-				fileData.add(in.nextLine());
-			}
-			
-			in.close();
-			
-		} catch (FileNotFoundException e) {
-			throw new GameLevelNotFoundException();
-			
-		} catch (Exception e) { //Catch any other exception types
-			throw new GameLevelNotFoundException("Error reading map file.");
-			
+			seed = (userInput.length == 2) ? Long.parseLong(userInput[1]) : new Random().nextLong();
+		} catch (NumberFormatException e) {
+			displayDefaultMsg();
+			return;
+		}
+		if (userInput.length > 2) {
+			displayDefaultMsg();
+			return;
+		}
+		
+		ChunkedMap map;
+		try {
+			int retainRadius = 1 + Math.max(EXPLORE_VIEWPORT_HEIGHT, Math.max(EXPLORE_VIEWPORT_WIDTH,
+					Math.max(VIEWPORT_HEIGHT, VIEWPORT_WIDTH))) / ChunkedMap.CHUNK_SIZE;
+			map = new ChunkedMap(EXPLORE_MAP_SIZE, EXPLORE_MAP_SIZE, new ScatteredTerrainGenerator(seed),
+					Files.createTempDirectory("rogue-chunks"), retainRadius);
+		} catch (IOException e) {
+			out.println("The following error occured while creating the map:");
+			out.println(e.getMessage());
+			return;
 		}
 		
-		return fileData;
+		//Start in the middle of the map, with the warp stone somewhere nearby:
+		Random random = new Random(seed);
+		int start = EXPLORE_MAP_SIZE / 2;
+		int warpX = start + random.nextInt(2 * EXPLORE_WARP_DISTANCE + 1) - EXPLORE_WARP_DISTANCE;
+		int warpY = start + random.nextInt(2 * EXPLORE_WARP_DISTANCE + 1) - EXPLORE_WARP_DISTANCE;
+		
+		//(The chunk store is temporary, so is deleted however the exploring ends: see endWorld, and close
+		//	if the input ends first)
+		exploreMap = map;
+		player.toFullHealth();
+		player.setPosition(start, start);
+		world = new World(player, map);
+		world.updateMapTerrain(start, start, Terrain.DEFAULT_SYMBOL);
+		world.updateMapTerrain(warpY, warpX, Terrain.DEFAULT_SYMBOL);
+		world.addItem(warpX, warpY, '@');
+		world.setViewport(EXPLORE_VIEWPORT_HEIGHT, EXPLORE_VIEWPORT_WIDTH);
+		applyWorldSettings();
+		
+		out.println("Exploring world " + seed + " - find the warp stone!");
+		runWorld();
 		
 	}
 	
 	/*
-	 *  Helper method to create new world, and update it with info from map file 
-	 *  	(called from StartFromFile)
+	 *  Helper method to run the world loop with moves typed on the keyboard
+	 *  	(one turn per line handled, or in real time if real-time mode is on and this game
+	 *  	is played on the console: see KeyboardInput and TickMoveSource)
 	 */
-	private void updateWorldFromFileData(ArrayList<String> fileData) {
-				
-		//Taking each line of the ArrayList String (previously read from the map file), in turn:
-		
-		//Get map dimensions from fileData:
-		String[] mapDimensions = fileData.get(0).split(" ");
-		int mapWidth = Integer.parseInt(mapDimensions[0]);
-		int mapHeight = Integer.parseInt(mapDimensions[1]);
+	private void runWorld() {
 		
-		//Create new world object with map dimensions, and existing player:
-		world = new World (player, mapHeight, mapWidth);
+		if (REALTIME_TICK_MILLIS <= 0 || in != System.in || System.console() == null) {
+			world.beginRun();
+			state = State.IN_WORLD;
+			return;
+		}
 		
-		//Update Terrain info based on file input:
-		//Get the terrain info from the fileDate as an array of Strings:
-		String[] terrainInfo = new String[mapHeight];
-		for (int i = 0; i < mapHeight; i ++) {
-			terrainInfo[i] = fileData.get(i + 1);
+		KeyboardInput input;
+		try {
+			input = KeyboardInput.start(in);
+		} catch (IOException e) {
+			out.println("The following error occured while starting real-time mode:");
+			out.println(e.getMessage());
+			world.beginRun();
+			state = State.IN_WORLD;
+			return;
 		}
-		//Process each character (ie. terrain item) in the array of Strings:
-		for (int i = 0; i < terrainInfo.length; i ++) {
-			for (int j = 0; j < terrainInfo[i].length(); j ++) {
-				world.updateMapTerrain(i, j, terrainInfo[i].charAt(j));
+		
+		world.setLineInput(false);
+		world.setIncrementalRendering(true);
+		try {
+			world.runWorld(new TickMoveSource(input, REALTIME_TICK_MILLIS));
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				out.println("The following error occured while restoring the terminal:");
+				out.println(e.getMessage());
 			}
 		}
+		endWorld();
 		
-		//Process balance of file data (ie. processing the player, monster and item entities):
-		int count = mapHeight + 1;
-		while (count < fileData.size()) {
-			
-			String[] line = fileData.get(count).split(" ");
-			int x;
-			int y;
-			String name;
-			int health;
-			int attack;
-			char symbol;
-	
-			switch(line[0]) {
-			
-				case "player":
-					x = Integer.parseInt(line[1]);
-					y = Integer.parseInt(line[2]);
-					player.setPosition(x, y);
-					break;
-				
-				case "monster":
-					x = Integer.parseInt(line[1]);
-					y = Integer.parseInt(line[2]);
-					name = line[3];
-					health = Integer.parseInt(line[4]);
-					attack = Integer.parseInt(line[5]);
-					world.addMonster(x, y, name, health, attack);
-					break;
-				
-				case "item":
-					x = Integer.parseInt(line[1]);
-					y = Integer.parseInt(line[2]);
-					symbol = line[3].charAt(0);
-					world.addItem(x, y, symbol);
-					break;
-					
-				default:
-					break;
-					
-			}
-			
-			count++;
-			
+	}
+	
+	/*
+	 *  Helper method called when the world loop ends (or a world could not be started)
+	 */
+	private void endWorld() {
+		
+		//Upon returning from game, any player attack bonuses received are reset
+		player.resetBonus();
+		deleteExploreMap();
+		pressEnterToReturn();
+		
+	}
+	
+	/*
+	 *  Helper method to delete the chunk store of the map being explored, if any
+	 */
+	private void deleteExploreMap() {
+		
+		if (exploreMap == null) return;
+		try {
+			exploreMap.deleteStore();
+		} catch (IOException e) {
+			out.println("The following error occured while deleting the map:");
+			out.println(e.getMessage());
+		}
+		exploreMap = null;
+		
+	}
+	
+	/*
+	 *  Helper method to apply the display and monster settings to a newly created world
+	 *  	(called from StartNoFile and StartFromFile)
+	 */
+	private void applyWorldSettings() {
+		
+		//A viewport is only used if both its dimensions are set (otherwise the whole map is shown):
+		if (VIEWPORT_HEIGHT > 0 && VIEWPORT_WIDTH > 0) {
+			world.setViewport(VIEWPORT_HEIGHT, VIEWPORT_WIDTH);
 		}
+		world.setOutput(out);
+		world.setIncrementalRendering(ANSI_RENDERING);
+		world.setPathfinding(PATHFINDING_RADIUS);
 		
 	}
+	
+	/*
+	 *  Method to display the metrics (time spent in each phase of a turn, level load times, etc.)
+	 *  	or, with 'stats reset', to clear them (called from MainMenuLoop)
+	 */
+	private void optionStats(String[] userInput) {
+
+		if (!statsAvailable) {
+			out.println("Statistics are not available in this game.");
+		} else if (userInput.length > 1 && userInput[1].equals("reset")) {
+			Metrics.reset();
+			out.println("Statistics reset.");
+		} else if (userInput.length > 1) {
+			displayDefaultMsg();
+			return;
+		} else {
+			out.print(Metrics.report());
+		}
+		out.println();
+
+	}
 
 	/*
 	 *  Method to save player data to file (called from MainMenuLoop)
 	 */
 	private void save() {
 		
+		if (!saveAvailable) {
+			displaySaveNotAvailableMsg();
+			return;
+		}
+		
 		//Check if player exists:
 		if (player == null) {
 			
-			System.out.println("No player data to save.");
-			System.out.println();
+			out.println("No player data to save.");
+			out.println();
 			return;
 			
 		}
@@ -416,8 +678,8 @@ public class GameEngine {
 			outputStream = new PrintWriter(new FileOutputStream(PLAYER_DATA_FILE_NAME));
 			
 		} catch (Exception e) {
-			System.out.println("Error saving player data.");
-			System.out.println();
+			out.println("Error saving player data.");
+			out.println();
 			return;	
 			
 		}
@@ -426,8 +688,8 @@ public class GameEngine {
 		outputStream.print(player.getName() + " " + player.getLevel());
 		outputStream.close();		
 		
-		System.out.println("Player data saved.");
-		System.out.println();
+		out.println("Player data saved.");
+		out.println();
 		
 	}
 	
@@ -436,6 +698,11 @@ public class GameEngine {
 	 */
 	private void load() {
 		
+		if (!saveAvailable) {
+			displaySaveNotAvailableMsg();
+			return;
+		}
+		
 		String [] player_details = null;
 		
 		//Check if player data file exists, and if so, read:
@@ -448,8 +715,8 @@ public class GameEngine {
 			
 		} catch (FileNotFoundException e) {
 			
-			System.out.println("No player data found.");
-			System.out.println();
+			out.println("No player data found.");
+			out.println();
 			return;
 		}
 		
@@ -461,13 +728,13 @@ public class GameEngine {
 			
 			player = new Player(name, level);
 			
-			System.out.println("Player data loaded.");
-			System.out.println();
+			out.println("Player data loaded.");
+			out.println();
 			
 		} catch (Exception c) {
 			
-			System.out.println("Error reading player data.");
-			System.out.println();
+			out.println("Error reading player data.");
+			out.println();
 			
 		}
 		
@@ -479,13 +746,10 @@ public class GameEngine {
 	 */
 	private void pressEnterToReturn() {
 		
-		System.out.println("(Press enter key to return to main menu)");
+		out.println("(Press enter key to return to main menu)");
 		
-		while(keyboard.nextLine() == null) {
-			//Wait here for ENTER press.
-		}
-		
-		displayMainMenu();
+		//Wait for ENTER press (the next line, see handleLine), then display the main menu:
+		state = State.PRESS_ENTER;
 	
 	}
 	
@@ -498,8 +762,8 @@ public class GameEngine {
 				+ "Damage: " + player.getAttackDamage() + "\n"
 				+ "Health: " + player.getCurrentHealth() + "/" + player.getMaxHealth();
 		
-		System.out.println(playerDetails);
-		System.out.println();
+		out.println(playerDetails);
+		out.println();
 		
 		pressEnterToReturn();
 		
@@ -528,8 +792,8 @@ public class GameEngine {
 				"|_| \\_\\___/ \\__, |\\__,_|\\___|\n" + 
 				"COMP90041   |___/ Assignment ";
 		
-		System.out.println(titleText);
-		System.out.println();
+		out.println(titleText);
+		out.println();
 
 	}
 	
@@ -549,8 +813,8 @@ public class GameEngine {
 			 monsterInfo = defaultMonster.getName() + " " + defaultMonster.getCurrentHealth() + "/" + defaultMonster.getMaxHealth();
 		}
 		
-		System.out.println("Player: " + playerInfo + "  | Monster: " + monsterInfo);
-		System.out.println();
+		out.println("Player: " + playerInfo + "  | Monster: " + monsterInfo);
+		out.println();
 				
 	}
 	
@@ -562,8 +826,8 @@ public class GameEngine {
 		String initialMsg = "Please enter a command to continue.\n"
 				+ "Type 'help' to learn how to get started.";
 		
-		System.out.println(initialMsg);
-		System.out.println();
+		out.println(initialMsg);
+		out.println();
 		
 	}
 	
@@ -576,8 +840,8 @@ public class GameEngine {
 				+ "Type 'start' to start a new game\n"
 				+ "Create a character, battle monsters, and find treasure!";
 		
-		System.out.println(helpMsg);
-		System.out.println();
+		out.println(helpMsg);
+		out.println();
 
 	}
 	
@@ -588,8 +852,8 @@ public class GameEngine {
 		
 		String notFound = "No " + thing + " found, please create a " + thing + " with '" + thing + "' first.";
 
-		System.out.println(notFound);
-		System.out.println();
+		out.println(notFound);
+		out.println();
 				
 	}
 	
@@ -602,12 +866,19 @@ public class GameEngine {
 				+ "player\n"
 				+ "monster\n"
 				+ "start\n"
+				+ "explore\n"
 				+ "load\n"
 				+ "save\n"
+				+ "stats [reset]\n"
 				+ "exit";
 		
-		System.out.println(commandsMsg);
-		System.out.println();
+		String cacheMsg = "(Level cache: " + levelCache.size() + "/" + levelCache.getCapacity() + " levels, "
+				+ levelCache.getHits() + " hits, " + levelCache.getMisses() + " misses)";
+		
+		out.println(commandsMsg);
+		out.println();
+		out.println(cacheMsg);
+		out.println();
 
 	}
 	
@@ -616,17 +887,27 @@ public class GameEngine {
 	 */
 	private void displayDefaultMsg() {
 		
-		System.out.println("Sorry, that command is not recognised.");
+		out.println("Sorry, that command is not recognised.");
 		displayHelpMsg();
 		
 	}
 	
+	/*
+	 *  Displays save and load error text, when they are turned off (see setSaveAvailable):
+	 */
+	private void displaySaveNotAvailableMsg() {
+		
+		out.println("Saving and loading player data are not available in this game.");
+		out.println();
+		
+	}
+	
 	/*
 	 *  Displays exit message upon quitting the program:
 	 */
 	private void displayExitMsg() {
 		
-		System.out.println("Thank you for playing Rogue!");
+		out.println("Thank you for playing Rogue!");
 		
 	}
 
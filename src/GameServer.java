@@ -0,0 +1,231 @@
+/**
+ * Class for the GameServer
+ * Hosts many games at once over TCP connections (eg. played with telnet or nc): each connection
+ * 	is a session with its own GameEngine, so its own player and world (see GameSession). The sessions
+ * 	share one level cache, so each level is only loaded once however many sessions play it.
+ * The connections are multiplexed over a small pool of selector threads, with non-blocking reads
+ * 	and writes, so a slow or idle client never holds one up. The games run on the selector threads
+ * 	too: each game is given its input a line at a time as it arrives, and handles it without waiting
+ * 	(see GameSession). Sessions have no threads of their own, so thousands fit in one JVM.
+ * Usage: java GameServer [port]
+ * 	(Listens on the loopback address only. -Drogue.server.selectors=n sets the number of
+ * 	selector threads: one per processor by default.)
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class GameServer implements AutoCloseable {
+
+	private final static int DEFAULT_PORT = 4000;
+	private final static int SELECTOR_THREADS = Integer.getInteger("rogue.server.selectors",
+			Runtime.getRuntime().availableProcessors());
+	private final static int ACCEPT_BACKLOG = 1024;
+	//Number of parsed levels kept in memory (as for GameEngine, set with -Drogue.levelcache.size):
+	private final static int LEVEL_CACHE_SIZE = Integer.getInteger("rogue.levelcache.size", 8);
+
+	//Number of connections accepted (see Metrics):
+	private final static Metrics.Counter SESSIONS = Metrics.counter("server.sessions");
+
+	private ServerSocketChannel server;
+	private SelectorLoop[] loops;
+	private int nextLoop;
+	private int nextSessionId;
+	private LevelCache levelCache;
+
+	/*
+	 *  One selector thread: reads and writes the connections of the sessions registered with it
+	 */
+	static class SelectorLoop implements Runnable {
+
+		private Selector selector;
+		private ConcurrentLinkedQueue<Runnable> tasks;
+
+		private SelectorLoop(int id) throws IOException {
+			this.selector = Selector.open();
+			this.tasks = new ConcurrentLinkedQueue<Runnable>();
+			Thread thread = new Thread(this, "selector-" + id);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/*
+		 *  Run a task on the selector thread
+		 */
+		private void execute(Runnable task) {
+			tasks.offer(task);
+			selector.wakeup();
+		}
+
+		/*
+		 *  Register the session's connection, then start its game
+		 */
+		private void register(GameSession session) {
+			execute(() -> {
+				try {
+					session.start(session.getChannel().register(selector, SelectionKey.OP_READ, session));
+				} catch (IOException e) {
+					session.close();
+				}
+			});
+		}
+
+		/*
+		 *  Selector thread: run the tasks, and read and write the connections which are ready, until closed
+		 */
+		@Override
+		public void run() {
+
+			try {
+				while (selector.isOpen()) {
+					selector.select(this::handle);
+					Runnable task;
+					while ((task = tasks.poll()) != null) {
+						task.run();
+					}
+				}
+			} catch (IOException | ClosedSelectorException e) {
+				//Selector closed (or failed): the server is stopping
+			}
+
+		}
+
+		/*
+		 *  Helper method to read and/or write one connection which is ready
+		 *  	(A game which fails only ends its own session.)
+		 */
+		private void handle(SelectionKey key) {
+
+			GameSession session = (GameSession) key.attachment();
+			try {
+				if (key.isReadable()) session.readFrom();
+				if (key.isValid() && key.isWritable()) session.writePending();
+			} catch (IOException e) {
+				session.close();
+			} catch (CancelledKeyException e) {
+				//Session closed meanwhile
+			} catch (RuntimeException e) {
+				System.out.println("The following error occured in session " + session.getId() + ":");
+				System.out.println(e);
+				session.close();
+			}
+
+		}
+
+		/*
+		 *  Close every session registered with this selector thread, then stop it
+		 */
+		private void close() {
+			execute(() -> {
+				for (SelectionKey key : selector.keys()) {
+					((GameSession) key.attachment()).close();
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					//Already stopping
+				}
+			});
+		}
+
+	}
+
+	public static void main(String[] args) {
+
+		int port = DEFAULT_PORT;
+		if (args.length > 0) {
+			try {
+				port = Integer.parseInt(args[0]);
+			} catch (NumberFormatException e) {
+				System.out.println("Usage: java GameServer [port]");
+				return;
+			}
+		}
+
+		// Export the game metrics via JMX (in the background, as starting JMX takes a while)
+		Thread export = new Thread(Metrics::exportToJmx, "metrics-export");
+		export.setDaemon(true);
+		export.start();
+
+		try (GameServer server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+			System.out.println("Game server listening on " + server.getAddress());
+			server.acceptConnections();
+		} catch (IOException e) {
+			System.out.println("The following error occured while running the game server:");
+			System.out.println(e.getMessage());
+		}
+
+	}
+
+	/*
+	 *  Constructor: listen on the given address, and start the selector threads
+	 */
+	public GameServer(InetSocketAddress address) throws IOException {
+
+		this.server = ServerSocketChannel.open();
+		server.bind(address, ACCEPT_BACKLOG);
+		this.levelCache = new LevelCache(LEVEL_CACHE_SIZE);
+		this.loops = new SelectorLoop[Math.max(1, SELECTOR_THREADS)];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new SelectorLoop(i);
+		}
+
+	}
+
+	/*
+	 *  Returns the address the server is listening on (eg. to find the port chosen for port 0)
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	/*
+	 *  Accept connections until the server is closed, starting a session for each
+	 *  	(Sessions are shared out between the selector threads in turn.)
+	 */
+	public void acceptConnections() throws IOException {
+
+		while (server.isOpen()) {
+
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			SESSIONS.increment();
+
+			SelectorLoop loop = loops[nextLoop];
+			nextLoop = (nextLoop + 1) % loops.length;
+			loop.register(new GameSession(++nextSessionId, channel, levelCache));
+
+		}
+
+	}
+
+	/*
+	 *  Stop accepting connections, close every session, and stop the selector threads
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		for (SelectorLoop loop : loops) {
+			loop.close();
+		}
+	}
+
+}
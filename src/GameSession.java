@@ -0,0 +1,238 @@
+/**
+ * Class for GameSession objects
+ * One connection to the GameServer, playing its own game: a GameEngine given the connection's
+ * 	input a line at a time (see GameEngine.handleLine), and writing to the connection's output.
+ * Sessions have no thread of their own: everything is done by the session's selector thread,
+ * 	as the connection is ready, so each session only costs its buffers and game state.
+ * 	- Input: the selector thread reads what the connection has sent into the input buffer, and
+ * 		hands each complete line (ending in \n or \r\n) to the game. A line longer than the
+ * 		buffer ends the session.
+ * 	- Output: the game's output is collected in the output buffer, and written to the connection
+ * 		(without blocking) after each read. Whatever the connection cannot take at once is written
+ * 		once the connection is ready for it; meanwhile, if MAX_BUFFERED_OUTPUT bytes are unwritten
+ * 		(eg. the client has stopped reading), no more lines are handed to the game, and reading
+ * 		from the connection stops, until the output is written.
+ * Each line is handled to the end before the selector thread moves on (the game never waits for input),
+ * 	so a line which takes a long time (eg. loading a large level) holds up the other sessions
+ * 	on the same selector thread meanwhile.
+ * The session ends when the game exits or the connection is closed.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+public class GameSession {
+
+	private final static int INPUT_BUFFER_SIZE = 4096;
+	private final static int OUTPUT_BUFFER_SIZE = 1024;	//Initial size (the buffer grows as needed)
+	private final static int MAX_BUFFERED_OUTPUT = 256 * 1024;
+
+	private int id;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private GameEngine engine;
+	private LevelCache levelCache;	//Shared by every session of the server
+	private ByteBuffer input;
+	private Output output;
+	private boolean exited;		//The game has ended: close the connection once the output is written
+	private boolean closed;
+
+	/*
+	 *  Output of the game: the bytes the game has written which are not written to the connection yet
+	 */
+	private class Output extends OutputStream {
+
+		private ByteBuffer buffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+
+		@Override
+		public void write(int b) {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+
+			if (closed) return;	//(Nobody left to read it)
+			if (buffer.remaining() < len) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + len));
+				buffer.flip();
+				buffer = larger.put(buffer);
+			}
+			buffer.put(b, off, len);
+
+		}
+
+		/*
+		 *  Write as much of the buffer as the connection takes now
+		 *  	Returns the number of bytes left to write.
+		 */
+		private int writeBuffer() throws IOException {
+
+			buffer.flip();
+			channel.write(buffer);
+			buffer.compact();
+
+			//(A buffer grown for a large frame is not kept once it is written)
+			if (buffer.position() == 0 && buffer.capacity() > OUTPUT_BUFFER_SIZE) {
+				buffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+			}
+			return buffer.position();
+
+		}
+
+	}
+
+	/*
+	 *  Constructor (the session starts once its connection is registered with its selector thread)
+	 */
+	public GameSession(int id, SocketChannel channel, LevelCache levelCache) {
+		this.id = id;
+		this.channel = channel;
+		this.levelCache = levelCache;
+		this.input = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+		this.output = new Output();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/*
+	 *  Start the game (called by the selector thread once registered)
+	 *  	The metrics are shared by every game in the JVM, and the player data file by every game
+	 *  	in the working directory, so the 'stats', 'save' and 'load' commands are not available.
+	 */
+	void start(SelectionKey key) throws IOException {
+
+		this.key = key;
+		this.engine = new GameEngine(new PrintStream(output, false), levelCache);
+		engine.setStatsAvailable(false);
+		engine.setSaveAvailable(false);
+		engine.start();
+		writeOutput();
+
+	}
+
+	/*
+	 *  Read what the connection has sent, and hand each complete line to the game
+	 *  	(called by the selector thread when readable)
+	 */
+	void readFrom() throws IOException {
+
+		if (channel.read(input) < 0) {
+			//The client has stopped sending: the game is given the last line, if it did not end in \n
+			//	(as a Scanner would), then ends once its output is written
+			input.flip();
+			if (input.hasRemaining() && !exited) handleLine(input.limit());
+			exited = true;
+			writeOutput();
+			return;
+		}
+		handleLines();
+
+	}
+
+	/*
+	 *  Write the rest of the output (called by the selector thread when writable),
+	 *  	then carry on handling the lines waiting for the output to be written, if any
+	 */
+	void writePending() throws IOException {
+		if (writeOutput() < MAX_BUFFERED_OUTPUT && !closed && !exited) handleLines();
+	}
+
+	/*
+	 *  End the session: the game ends, and the connection is closed
+	 *  	(Called by the selector thread, any number of times.)
+	 */
+	void close() {
+
+		if (closed) return;
+		closed = true;
+		if (engine != null) engine.close();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			//Closed anyway
+		}
+
+	}
+
+	/*
+	 *  Helper method to hand each complete line in the input buffer to the game, until the game
+	 *  	exits or has written MAX_BUFFERED_OUTPUT bytes which are still unwritten, then write the output
+	 */
+	private void handleLines() throws IOException {
+
+		input.flip();
+		boolean waiting = false;	//Lines are left waiting for the output to be written
+		for (int i = input.position(); i < input.limit() && !exited; i++) {
+			if (input.get(i) != '\n') continue;
+			handleLine(i);
+			input.position(i + 1);
+			if (output.buffer.position() >= MAX_BUFFERED_OUTPUT && writeOutput() >= MAX_BUFFERED_OUTPUT) {
+				waiting = true;
+				break;
+			}
+		}
+
+		if (!waiting && !exited && input.position() == 0 && input.limit() == input.capacity()) {
+			throw new IOException("Line longer than " + INPUT_BUFFER_SIZE + " bytes.");
+		}
+		input.compact();
+		writeOutput();
+
+	}
+
+	/*
+	 *  Helper method to hand the game the line from the input buffer's position to 'end' (not including
+	 *  	the \n, or a \r before it)
+	 */
+	private void handleLine(int end) {
+
+		int start = input.position();
+		int length = (end > start && input.get(end - 1) == '\r') ? end - start - 1 : end - start;
+		String line = new String(input.array(), input.arrayOffset() + start, length, Charset.defaultCharset());
+		if (!engine.handleLine(line)) exited = true;
+
+	}
+
+	/*
+	 *  Helper method to write as much of the output as the connection takes now, leaving the rest
+	 *  	until the connection is ready (meanwhile, reading stops if too much is waiting)
+	 *  	Once the game has exited, the connection is closed when all the output is written.
+	 *  	Returns the number of bytes left to write.
+	 */
+	private int writeOutput() throws IOException {
+
+		if (closed) return 0;
+		int left = output.writeBuffer();
+		if (left == 0 && exited) {
+			close();
+			return 0;
+		}
+		setInterest(SelectionKey.OP_WRITE, left > 0);
+		setInterest(SelectionKey.OP_READ, left < MAX_BUFFERED_OUTPUT && !exited);
+		return left;
+
+	}
+
+	/*
+	 *  Helper method to turn interest in reading or writing the connection on or off
+	 */
+	private void setInterest(int operation, boolean on) {
+		if (!key.isValid()) return;
+		key.interestOps(on ? (key.interestOps() | operation) : (key.interestOps() & ~operation));
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Class for GridMap objects
+ * A map which holds the terrain of every tile in memory (or in a memory-mapped level file),
+ * 	as used by levels. Can be copied cheaply, and written to level files.
+ * @author: Damian Curran
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+public class GridMap extends Map {
+
+	//Terrain is stored as one byte per tile (row-major), plus a bitset of traversable tiles
+	//	(bit i of the bitset, in word i / 64, is set if tile i is traversable).
+	//Terrain objects are only created on request, as shared flyweights (see Terrain.valueOf).
+	//Both are buffers so that a map can also be used in place from a memory-mapped level file.
+	//Read-only buffers are copied to the heap the first time any terrain is changed.
+	private ByteBuffer symbols;
+	private LongBuffer traversable;
+
+	/*
+	 *  Constructor
+	 */
+	public GridMap(int h, int w) {
+
+		super(h, w);
+
+		//Initialise every tile to the default Terrain:
+		int size = h * w;
+		byte[] defaultSymbols = new byte[size];
+		Arrays.fill(defaultSymbols, (byte) Terrain.DEFAULT_SYMBOL);
+		long[] allTraversable = new long[wordsFor(size)];
+		Arrays.fill(allTraversable, -1L);
+
+		this.symbols = ByteBuffer.wrap(defaultSymbols);
+		this.traversable = LongBuffer.wrap(allTraversable);
+
+	}
+
+	/*
+	 *  Constructor (overloaded)
+	 *  Used by BinaryLevelFormat to create a map over existing (eg. memory-mapped) terrain data.
+	 *  symbols holds height * width symbol bytes, and traversable the matching bitset words.
+	 */
+	GridMap(int h, int w, ByteBuffer symbols, LongBuffer traversable) {
+
+		super(h, w);
+
+		if (symbols.capacity() != h * w || traversable.capacity() != wordsFor(h * w)) {
+			throw new IllegalArgumentException("Terrain data does not match map dimensions.");
+		}
+		this.symbols = symbols;
+		this.traversable = traversable;
+
+	}
+
+	/*
+	 *  Returns a copy of this map
+	 *  The copy shares the terrain data (read-only) until either map changes it,
+	 *  	so copying is cheap regardless of map size.
+	 *  	(This map also switches to read-only views of its data, so that it copies the data
+	 *  	before its next change too, rather than changing the copy's terrain.)
+	 */
+	public GridMap copy() {
+		shareTerrain();
+		return new GridMap(getHeight(), getWidth(), symbols.asReadOnlyBuffer(), traversable.asReadOnlyBuffer());
+	}
+	
+	/*
+	 *  Switch to read-only views of the terrain data (if not read-only already), so the data is copied
+	 *  	before it is next changed, and can be shared meanwhile
+	 *  Once switched, copy() only reads this map, so a map switched before it is shared between threads
+	 *  	(eg. by LevelCache) can be copied on any of them.
+	 */
+	void shareTerrain() {
+		if (!symbols.isReadOnly()) symbols = symbols.asReadOnlyBuffer();
+		if (!traversable.isReadOnly()) traversable = traversable.asReadOnlyBuffer();
+	}
+
+	/*
+	 *  Setter methods:
+	 */
+	@Override
+	public void setElement(int y, int x, char c, boolean b) {
+		int index = indexOf(y, x);
+		ensureWritable();
+		symbols.put(index, toByte(c));
+		setTraversable(index, b);
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	@Override
+	public Terrain getElement(int y, int x) {
+		int index = indexOf(y, x);
+		return Terrain.valueOf((char) (symbols.get(index) & 0xFF), getTraversable(index));
+	}
+
+	/*
+	 *  Read-only views of the whole terrain data, from position 0 (used by BinaryLevelFormat to write level files)
+	 */
+	ByteBuffer getSymbols() {
+		return symbols.asReadOnlyBuffer().clear();
+	}
+
+	LongBuffer getTraversableWords() {
+		return traversable.asReadOnlyBuffer().clear();
+	}
+
+	/*
+	 *  Update a row of terrain elements, starting at (y,0), from single-byte symbols
+	 *  Called during map load from file to copy a whole row of terrain at once
+	 */
+	@Override
+	public void updateTerrainRow(int y, byte[] row, int length) {
+
+		if (length == 0) return;
+		int start = indexOf(y, 0);
+		if (length > getWidth()) {
+			throw new ArrayIndexOutOfBoundsException("Terrain row longer than map width.");
+		}
+		ensureWritable();
+		for (int i = 0; i < length; i++) {
+			symbols.put(start + i, row[i]);
+			setTraversable(start + i, Terrain.isTraversable((char) (row[i] & 0xFF)));
+		}
+
+	}
+
+	/*
+	 *  Check if terrain element is traversable
+	 *  Used during unit movement operations to check if adjacent movement is possible
+	 */
+	@Override
+	public boolean isTraversable(int y, int x) {
+		return getTraversable(indexOf(y, x));
+	}
+
+	/*
+	 *  Helper methods to read and write the traversable bit of tile number 'index'
+	 */
+	private boolean getTraversable(int index) {
+		return (traversable.get(index >>> 6) & (1L << index)) != 0;
+	}
+
+	private void setTraversable(int index, boolean b) {
+		long word = traversable.get(index >>> 6);
+		word = b ? (word | (1L << index)) : (word & ~(1L << index));
+		traversable.put(index >>> 6, word);
+	}
+
+	/*
+	 *  Helper method to copy read-only (eg. memory-mapped) terrain data to the heap before it is changed
+	 */
+	private void ensureWritable() {
+		
+		//(The whole buffer is copied, and the copy rewound: the terrain is only accessed by index,
+		//	but the read-only views of getSymbols and getTraversableWords are read from the position)
+		if (symbols.isReadOnly()) {
+			ByteBuffer copy = ByteBuffer.allocate(symbols.capacity());
+			copy.put(symbols.duplicate().clear());
+			symbols = copy.clear();
+		}
+		
+		if (traversable.isReadOnly()) {
+			LongBuffer copy = LongBuffer.allocate(traversable.capacity());
+			copy.put(traversable.duplicate().clear());
+			traversable = copy.clear();
+		}
+		
+	}
+	
+	/*
+	 *  Helper method to convert (y,x) into an index of the flat terrain arrays
+	 */
+	private int indexOf(int y, int x) {
+		checkBounds(y, x);
+		return y * getWidth() + x;
+	}
+
+	/*
+	 *  Returns the number of 64-bit words needed for a bitset of 'size' bits
+	 */
+	static int wordsFor(int size) {
+		return (size + 63) >>> 6;
+	}
+
+	/*
+	 *  Helper method to convert a terrain symbol to its byte in the terrain array
+	 */
+	private static byte toByte(char c) {
+		checkSymbol(c);
+		return (byte) c;
+	}
+
+}
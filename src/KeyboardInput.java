@@ -0,0 +1,190 @@
+/**
+ * Class for KeyboardInput objects
+ * Reads moves from the terminal as single key presses (no Enter), on a dedicated input thread,
+ * 	and passes them to the game through a lock-free queue (see TickMoveSource):
+ * 	- While it is open, the terminal is in raw mode (no line editing, no echo), set with stty.
+ * 		Closing it restores the terminal settings it started with (as does a shutdown hook,
+ * 		if the game exits without closing it, eg. on Ctrl+C or System.exit).
+ * 	- Keys are read from the terminal's input directly, not through the game's Scanner: this works
+ * 		because the Scanner only reads one line at a time from the terminal (see GameEngine),
+ * 		so keys typed ahead of real-time mode are still waiting on the terminal's input.
+ * 	- The input thread only reads keys which are already available, so it can stop
+ * 		without taking any of the input meant for the main menu.
+ * Keys: w, a, s, d move the player, and q returns home. Other keys are ignored.
+ * At most MAX_QUEUED_MOVES moves are queued (keys pressed while the queue is full are dropped),
+ * 	so holding a key down does not leave the player moving after it is released.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class KeyboardInput implements AutoCloseable {
+
+	private final static int MAX_QUEUED_MOVES = 2;
+	private final static long POLL_INTERVAL_NANOS = 2000000;	//2ms between checks for a key
+
+	private InputStream in;
+	private ConcurrentLinkedQueue<String> moves;
+	private AtomicInteger queued;
+	private volatile boolean open;
+	private Thread thread;
+	private String savedSettings;	//Terminal settings to restore on close
+	private Thread restoreOnExit;	//Shutdown hook restoring the terminal settings, until closed
+
+	/*
+	 *  Constructor (keyboard input is started with start())
+	 */
+	private KeyboardInput(InputStream in) {
+		this.in = in;
+		this.moves = new ConcurrentLinkedQueue<String>();
+		this.queued = new AtomicInteger();
+	}
+
+	/*
+	 *  Put the terminal in raw mode and start reading keys from 'in' (the terminal's input)
+	 *  Throws IOException if the terminal settings cannot be changed (eg. there is no terminal).
+	 */
+	public static KeyboardInput start(InputStream in) throws IOException {
+
+		KeyboardInput input = new KeyboardInput(in);
+		input.savedSettings = stty("-g").trim();
+		input.restoreOnExit = new Thread(input::restoreTerminal, "keyboard-restore");
+		Runtime.getRuntime().addShutdownHook(input.restoreOnExit);
+		try {
+			stty("-icanon -echo min 1");
+		} catch (IOException e) {
+			input.removeShutdownHook();
+			throw e;
+		}
+
+		input.open = true;
+		input.thread = new Thread(input::readKeys, "keyboard-input");
+		input.thread.setDaemon(true);
+		input.thread.start();
+		return input;
+
+	}
+
+	/*
+	 *  Returns the next move typed (removing it from the queue), or null if none is waiting
+	 */
+	public String pollMove() {
+		String move = moves.poll();
+		if (move != null) queued.decrementAndGet();
+		return move;
+	}
+
+	/*
+	 *  Returns true until the keyboard input is closed (or the input has ended)
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+
+	/*
+	 *  Stop reading keys, and restore the terminal settings
+	 */
+	@Override
+	public void close() throws IOException {
+
+		open = false;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		removeShutdownHook();
+		stty(savedSettings);
+
+	}
+
+	/*
+	 *  Shutdown hook: restore the terminal settings if the game exits while keyboard input is open
+	 */
+	private void restoreTerminal() {
+		try {
+			stty(savedSettings);
+		} catch (IOException e) {
+			//Nothing more can be done while exiting
+		}
+	}
+
+	/*
+	 *  Helper method to remove the shutdown hook (unless the game is already exiting, when it runs anyway)
+	 */
+	private void removeShutdownHook() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(restoreOnExit);
+		} catch (IllegalStateException e) {
+			//Already exiting
+		}
+	}
+
+	/*
+	 *  Input thread: queue the moves for the keys pressed, until closed
+	 */
+	private void readKeys() {
+
+		try {
+			while (open) {
+				if (in.available() == 0) {
+					LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+					continue;
+				}
+				int key = in.read();
+				if (key < 0) break;
+				String move = moveFor(Character.toLowerCase((char) key));
+				if (move != null && queued.get() < MAX_QUEUED_MOVES) {
+					queued.incrementAndGet();
+					moves.offer(move);
+				}
+			}
+		} catch (IOException e) {
+			//Input has failed: treated as the end of the input
+		}
+		open = false;
+
+	}
+
+	/*
+	 *  Helper method to return the move for a key, or null if the key is not a move
+	 */
+	private static String moveFor(char key) {
+		switch (key) {
+			case 'w':
+			case 'a':
+			case 's':
+			case 'd':
+				return String.valueOf(key);
+			case 'q':
+				return "home";
+			default:
+				return null;
+		}
+	}
+
+	/*
+	 *  Helper method to run stty on the terminal with the given arguments, and return its output
+	 */
+	private static String stty(String arguments) throws IOException {
+
+		Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < /dev/tty")
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		byte[] output = process.getInputStream().readAllBytes();
+		try {
+			if (process.waitFor() != 0) throw new IOException("Terminal settings could not be changed (stty failed).");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while changing terminal settings.");
+		}
+		return new String(output, StandardCharsets.US_ASCII);
+
+	}
+
+}
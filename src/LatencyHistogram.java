@@ -0,0 +1,161 @@
+/**
+ * Class for LatencyHistogram objects
+ * Records latencies (in nanoseconds) into log-linear buckets, as HdrHistogram does:
+ * 	each power of two is split into SUB_BUCKETS equal buckets, so any recorded value
+ * 	is reported to within 1/SUB_BUCKETS (12.5%) of its true value, with a fixed number of buckets.
+ * Recording is lock-free (every bucket is a LongAdder), so any number of threads
+ * 	can record into the same histogram without contending on a lock.
+ * Exported via JMX by Metrics.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram implements Metrics.LatencyMXBean {
+
+	private final static int SUB_BUCKET_BITS = 3;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	//Values below SUB_BUCKETS have a bucket each; each power of two above has SUB_BUCKETS buckets:
+	private final static int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	private final static double NANOS_PER_MICRO = 1000.0;
+
+	private String name;
+	private LongAdder[] buckets;
+	private LongAdder total;
+	private LongAccumulator max;
+
+	/*
+	 *  Constructor (histograms are created by Metrics.histogram())
+	 */
+	LatencyHistogram(String name) {
+		this.name = name;
+		this.buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+		this.total = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0);
+	}
+
+	/*
+	 *  Record one latency (negative values are recorded as 0)
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets[bucketOf(value)].increment();
+		total.add(value);
+		max.accumulate(value);
+	}
+
+	/*
+	 *  Clear all recorded values
+	 *  (Values recorded by other threads while the histogram is being reset may be kept or lost.)
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		total.reset();
+		max.reset();
+	}
+
+	/*
+	 *  Getter methods (latencies in nanoseconds):
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		long n = 0;
+		for (LongAdder bucket : buckets) {
+			n += bucket.sum();
+		}
+		return n;
+	}
+
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = getCount();
+		return (n == 0) ? 0 : (double) total.sum() / n;
+	}
+
+	/*
+	 *  Returns the value at the given percentile (0-100): the highest value in the bucket
+	 *  	holding that percentile, so within 12.5% above the true value (0 if nothing recorded)
+	 */
+	public long getPercentile(double percentile) {
+
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			n += counts[i];
+		}
+		if (n == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(highestValueOf(i), getMax());
+		}
+		return getMax();
+
+	}
+
+	/*
+	 *  LatencyMXBean Interface methods (in microseconds, for JMX clients):
+	 */
+	public double getMeanMicros() {
+		return getMean() / NANOS_PER_MICRO;
+	}
+
+	public double getP50Micros() {
+		return getPercentile(50) / NANOS_PER_MICRO;
+	}
+
+	public double getP90Micros() {
+		return getPercentile(90) / NANOS_PER_MICRO;
+	}
+
+	public double getP99Micros() {
+		return getPercentile(99) / NANOS_PER_MICRO;
+	}
+
+	public double getMaxMicros() {
+		return getMax() / NANOS_PER_MICRO;
+	}
+
+	/*
+	 *  Helper method to return the bucket of a (non-negative) value:
+	 *  	values below SUB_BUCKETS have their own bucket; otherwise the bucket is given by the
+	 *  	position of the top bit and the SUB_BUCKET_BITS bits below it.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/*
+	 *  Helper method to return the highest value in bucket i
+	 */
+	private static long highestValueOf(int i) {
+		if (i < SUB_BUCKETS) return i;
+		int exponent = i / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowest = (long) (SUB_BUCKETS + i % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+}
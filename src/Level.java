@@ -0,0 +1,98 @@
+/**
+ * Class for Level objects
+ * A level as loaded from a map file: the map terrain, the player start position
+ * 	and the monsters and items to spawn. Used to create a World for a player.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.ArrayList;
+
+public class Level {
+
+	private GridMap map;
+	private boolean hasPlayerPosition;
+	private int playerPosX;
+	private int playerPosY;
+	private ArrayList<Monster> monsters;
+	private ArrayList<Item> items;
+
+	/*
+	 *  Constructor
+	 */
+	public Level(GridMap map) {
+		this.map = map;
+		this.hasPlayerPosition = false;
+		this.monsters = new ArrayList<Monster>();
+		this.items = new ArrayList<Item>();
+	}
+
+	/*
+	 *  Create a new World from this level, with the player at the level's start position
+	 *  	(if the level has one) and newly spawned monsters and items.
+	 *  The world gets its own copy of the map (copied only if its terrain is changed),
+	 *  	so the same level can be used to create any number of worlds.
+	 */
+	public World createWorld(Player player) {
+
+		World world = new World(player, map.copy());
+
+		if (hasPlayerPosition) player.setPosition(playerPosX, playerPosY);
+
+		for (Monster m : monsters) {
+			world.addMonster(m.getPosX(), m.getPosY(), m.getName(), m.getMaxHealth(), m.getAttackDamage());
+		}
+
+		for (Item i : items) {
+			world.addItem(i.getPosX(), i.getPosY(), i.getSymbol());
+		}
+
+		return world;
+
+	}
+
+	/*
+	 *  Setter methods (used while loading a level file):
+	 */
+	public void setPlayerPosition(int posX, int posY) {
+		this.hasPlayerPosition = true;
+		this.playerPosX = posX;
+		this.playerPosY = posY;
+	}
+
+	public void addMonster(int posX, int posY, String name, int maxHealth, int attackDamage) {
+		monsters.add(new Monster(name, maxHealth, attackDamage, posX, posY));
+	}
+
+	public void addItem(int posX, int posY, char c) {
+		items.add(new Item(posY, posX, c));
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	public GridMap getMap() {
+		return map;
+	}
+
+	public boolean hasPlayerPosition() {
+		return hasPlayerPosition;
+	}
+
+	public int getPlayerPosX() {
+		return playerPosX;
+	}
+
+	public int getPlayerPosY() {
+		return playerPosY;
+	}
+
+	public ArrayList<Monster> getMonsters() {
+		return monsters;
+	}
+
+	public ArrayList<Item> getItems() {
+		return items;
+	}
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Class for LevelCache objects
+ * Keeps recently loaded levels in memory, so replaying a level does not re-read the map file.
+ * Levels are keyed by file path, and reloaded if the file has been modified since it was cached.
+ * The least recently used level is evicted once the cache is full.
+ * A cache can be shared by games on different threads (eg. GameServer sessions): cached levels
+ * 	are only read once loaded, as each world is created on its own copy of the level's map.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import jdk.jfr.FlightRecorder;
+
+public class LevelCache {
+
+	private int capacity;
+	private LinkedHashMap<Path, CachedLevel> levels;
+	private LevelLoader levelLoader;
+
+	private long hits;
+	private long misses;
+
+	/*
+	 *  Cached level, with the file details it was loaded from
+	 */
+	private static class CachedLevel {
+
+		private Level level;
+		private long lastModified;
+		private long size;
+
+		private CachedLevel(Level level, long lastModified, long size) {
+			this.level = level;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+	}
+
+	/*
+	 *  Constructor
+	 */
+	public LevelCache(int capacity) {
+
+		this.capacity = capacity;
+		this.levelLoader = new LevelLoader();
+
+		//Access-ordered map, so the eldest entry is always the least recently used level:
+		this.levels = new LinkedHashMap<Path, CachedLevel>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<Path, CachedLevel> eldest) {
+				return size() > LevelCache.this.capacity;
+			}
+		};
+
+	}
+
+	/*
+	 *  Returns the level in the file, loading it (and caching it) if it is not cached or out of date
+	 *  Binary level files (.lvl) are memory-mapped, and any other file is read as a text map file.
+	 *  Throws GameLevelNotFoundException if the file cannot be found or read,
+	 *  	and IllegalArgumentException (with a description) if the file content is invalid.
+	 */
+	public synchronized Level getLevel(String filename) throws GameLevelNotFoundException {
+
+		//(The flight recorder event is only created once the flight recorder has been started, see TurnEvent)
+		LevelLoadEvent event = null;
+		if (FlightRecorder.isInitialized()) {
+			event = new LevelLoadEvent();
+			event.begin();
+		}
+		Path path = Paths.get(filename).toAbsolutePath().normalize();
+
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			throw new GameLevelNotFoundException();
+		} catch (IOException e) {
+			throw new GameLevelNotFoundException("Error reading map file.");
+		}
+		long lastModified = attributes.lastModifiedTime().toMillis();
+
+		CachedLevel cached = levels.get(path);
+		if (cached != null && cached.lastModified == lastModified && cached.size == attributes.size()) {
+			hits++;
+			commitLoadEvent(event, path, attributes.size(), true);
+			return cached.level;
+		}
+
+		misses++;
+		Level level;
+		if (filename.endsWith(BinaryLevelFormat.FILE_EXTENSION)) {
+			level = BinaryLevelFormat.read(filename);
+		} else {
+			level = levelLoader.load(filename);
+		}
+
+		//(The map's terrain is switched to read-only views now, while locked, so copying it for each
+		//	world never changes the level, whichever thread does so: see GridMap.shareTerrain)
+		level.getMap().shareTerrain();
+		if (capacity > 0) levels.put(path, new CachedLevel(level, lastModified, attributes.size()));
+		commitLoadEvent(event, path, attributes.size(), false);
+		return level;
+
+	}
+
+	/*
+	 *  Helper method to end a level load flight recorder event, if any (committed only if it is being recorded)
+	 */
+	private static void commitLoadEvent(LevelLoadEvent event, Path path, long bytes, boolean cacheHit) {
+		if (event == null || !event.shouldCommit()) return;
+		event.file = path.toString();
+		event.bytes = bytes;
+		event.binary = path.toString().endsWith(BinaryLevelFormat.FILE_EXTENSION);
+		event.cacheHit = cacheHit;
+		event.commit();
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized int size() {
+		return levels.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+}
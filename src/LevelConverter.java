@@ -0,0 +1,40 @@
+/**
+ * Command line tool to convert a text map file (.dat) into a binary level file (.lvl)
+ * Usage: java LevelConverter <map file>.dat [<level file>.lvl]
+ * @author: Damian Curran
+ *
+ */
+
+public class LevelConverter {
+
+	public static void main(String[] args) {
+
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: java LevelConverter <map file>.dat [<level file>"
+					+ BinaryLevelFormat.FILE_EXTENSION + "]");
+			return;
+		}
+
+		String source = args[0];
+		String target;
+		if (args.length == 2) {
+			target = args[1];
+		} else {
+			target = (source.endsWith(".dat") ? source.substring(0, source.length() - 4) : source)
+					+ BinaryLevelFormat.FILE_EXTENSION;
+		}
+
+		try {
+			Level level = new LevelLoader().load(source);
+			BinaryLevelFormat.write(level, target);
+		} catch (Exception e) {
+			System.out.println("The following error occured while converting the file:");
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		System.out.println("Converted " + source + " to " + target + ".");
+
+	}
+
+}
@@ -0,0 +1,540 @@
+/**
+ * Class for LevelGenerator objects
+ * Generates levels of any size from a seed (the same seed and size always give the same level).
+ * The map is divided into blocks of BLOCK_SIZE x BLOCK_SIZE tiles, each generated on its own:
+ * 	- a room, or a cave (grown by a cellular automaton), surrounded by wall ('#'),
+ * 		with a pool of water ('~') in the middle of some blocks;
+ * 	- corridors from the middle of the block (its hub) to a door on each side shared with
+ * 		another block. The door positions are derived from the seed and the two blocks'
+ * 		coordinates, so neighbouring blocks always agree on them and every hub is connected;
+ * 	- monsters and items on random floor tiles of the block.
+ * The player starts at the hub of the top-left block, and the warp stone is at the hub
+ * 	of the bottom-right block.
+ * Each block is built a whole row of tiles at a time (one bit per tile, including the cave
+ * 	automaton), then written straight into the map's terrain arrays (rather than tile by tile),
+ * 	so even very large levels are generated quickly.
+ * Usage: java LevelGenerator <height> <width> <seed> <output file (.dat or .lvl)> [threads]
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class LevelGenerator {
+
+	public final static int BLOCK_SIZE = 64;
+	public final static int MIN_SIZE = 8;
+
+	private final static byte FLOOR = '.';
+	private final static byte WALL = '#';
+	private final static byte WATER = '~';
+	private final static char WARP_STONE = '@';
+	private final static char[] ITEMS = {'+', '^'};
+
+	//Chances (in %) of a block being a cave, having a pool, and having an item:
+	private final static int CAVE_CHANCE = 35;
+	private final static int POOL_CHANCE = 30;
+	private final static int ITEM_CHANCE = 25;
+	private final static int CAVE_ITERATIONS = 4;
+	private final static int MAX_MONSTERS_PER_BLOCK = 2;
+	private final static int PLACEMENT_ATTEMPTS = 10;
+
+	private final static String[] MONSTER_NAMES = {"Slime", "Bat", "Orc"};
+	private final static int[] MONSTER_HEALTH = {5, 3, 15};
+	private final static int[] MONSTER_ATTACK = {1, 1, 4};
+
+	//Sides of a block (for door positions):
+	private final static int EAST = 0;
+	private final static int SOUTH = 1;
+
+	private long seed;
+
+	/*
+	 *  Constructor
+	 */
+	public LevelGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/*
+	 *  Generate a level of height x width tiles (on this thread)
+	 */
+	public Level generate(int height, int width) {
+		return generate(height, width, null);
+	}
+
+	/*
+	 *  Generate a level of height x width tiles (overloaded)
+	 *  The rows of blocks are generated in parallel on the fork-join pool (or on this thread
+	 *  	if pool is null). Blocks only depend on the seed and their own coordinates, and the
+	 *  	spawns are added to the level in block order, so the level is the same either way.
+	 */
+	public Level generate(int height, int width, ForkJoinPool pool) {
+
+		if (height < MIN_SIZE || width < MIN_SIZE) {
+			throw new IllegalArgumentException("Generated maps must be at least " + MIN_SIZE + "x" + MIN_SIZE + ".");
+		}
+		if ((long) height * width > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Generated maps must have at most " + Integer.MAX_VALUE + " tiles.");
+		}
+
+		//The map is created over the terrain arrays, which are then filled in directly:
+		byte[] symbols = new byte[height * width];
+		long[] traversable = new long[GridMap.wordsFor(height * width)];
+		GridMap map = new GridMap(height, width, ByteBuffer.wrap(symbols), LongBuffer.wrap(traversable));
+		Level level = new Level(map);
+
+		//Each row of blocks is a region, with its own list of spawns:
+		int blocksY = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		Spawns[] regionSpawns = new Spawns[blocksY];
+		Region regions = new Region(0, blocksY, height, width, symbols, traversable, regionSpawns);
+		if (pool == null) {
+			regions.generateRows();
+		} else {
+			pool.invoke(regions);
+		}
+
+		//Stitch the regions together: the traversable words which straddle the border between two
+		//	regions (or the end of the map) were left to here, so no two regions write the same word.
+		for (int by = 0; by < blocksY; by++) {
+			int start = by * BLOCK_SIZE * width;
+			int end = Math.min(height, (by + 1) * BLOCK_SIZE) * width;
+			traversable[start >>> 6] = traversableWord(symbols, start >>> 6);
+			traversable[(end - 1) >>> 6] = traversableWord(symbols, (end - 1) >>> 6);
+		}
+
+		//Add the spawns of each region in order:
+		for (Spawns spawns : regionSpawns) {
+			for (Monster m : spawns.monsters) {
+				level.addMonster(m.getPosX(), m.getPosY(), m.getName(), m.getMaxHealth(), m.getAttackDamage());
+			}
+			for (Item i : spawns.items) {
+				level.addItem(i.getPosX(), i.getPosY(), i.getSymbol());
+			}
+		}
+
+		placePlayerAndWarpStone(height, width, level);
+		return level;
+
+	}
+
+	/*
+	 *  Monsters and items spawned in one region, added to the level once every region is generated
+	 */
+	private static class Spawns {
+
+		private ArrayList<Monster> monsters = new ArrayList<Monster>();
+		private ArrayList<Item> items = new ArrayList<Item>();
+
+		void addMonster(int posX, int posY, String name, int maxHealth, int attackDamage) {
+			monsters.add(new Monster(name, maxHealth, attackDamage, posX, posY));
+		}
+
+		void addItem(int posX, int posY, char c) {
+			items.add(new Item(posY, posX, c));
+		}
+
+	}
+
+	/*
+	 *  A range of rows of blocks [fromRow, toRow), split in half until each task has one row
+	 */
+	private class Region extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private int fromRow;
+		private int toRow;
+		private int height;
+		private int width;
+		private byte[] symbols;
+		private long[] traversable;
+		private Spawns[] regionSpawns;
+
+		Region(int fromRow, int toRow, int height, int width, byte[] symbols, long[] traversable, Spawns[] regionSpawns) {
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.height = height;
+			this.width = width;
+			this.symbols = symbols;
+			this.traversable = traversable;
+			this.regionSpawns = regionSpawns;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (toRow - fromRow <= 1) {
+				generateRows();
+				return;
+			}
+
+			int middle = (fromRow + toRow) >>> 1;
+			invokeAll(new Region(fromRow, middle, height, width, symbols, traversable, regionSpawns),
+					new Region(middle, toRow, height, width, symbols, traversable, regionSpawns));
+
+		}
+
+		/*
+		 *  Generate every block in the rows of this region
+		 */
+		void generateRows() {
+
+			int blocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			boolean single = (height <= BLOCK_SIZE && width <= BLOCK_SIZE);
+
+			for (int by = fromRow; by < toRow; by++) {
+
+				//Only the traversable words entirely inside this row of blocks are written here:
+				int start = by * BLOCK_SIZE * width;
+				int end = Math.min(height, (by + 1) * BLOCK_SIZE) * width;
+				int fromWord = (start + 63) >>> 6;
+				int toWord = end >>> 6;
+
+				regionSpawns[by] = new Spawns();
+				for (int bx = 0; bx < blocksX; bx++) {
+					generateBlock(by, bx, height, width, single, symbols, traversable, fromWord, toWord, regionSpawns[by]);
+				}
+
+			}
+
+		}
+
+	}
+
+	/*
+	 *  Generate the terrain and spawns of block (by, bx)
+	 *  The block is built as one word per row of tiles: bit x of floor[y] is set if tile (y,x) is floor
+	 *  	(otherwise wall), and bit x of water[y] if it is water instead. The finished rows are then
+	 *  	written into the map's terrain symbols and traversable bitset.
+	 *  (A level of a single block is always a plain room, as there are no corridors through its hub.)
+	 */
+	private void generateBlock(int by, int bx, int height, int width, boolean single,
+			byte[] symbols, long[] traversable, int fromWord, int toWord, Spawns spawns) {
+
+		Random random = new Random(mix(seed ^ (by * 0x9E3779B97F4A7C15L) ^ (bx * 0xC2B2AE3D27D4EB4FL)));
+
+		int top = by * BLOCK_SIZE;
+		int left = bx * BLOCK_SIZE;
+		int blockHeight = Math.min(BLOCK_SIZE, height - top);
+		int blockWidth = Math.min(BLOCK_SIZE, width - left);
+		int hubY = blockHeight / 2;
+		int hubX = blockWidth / 2;
+
+		long[] floor = (random.nextInt(100) < CAVE_CHANCE && !single && blockHeight > 2 && blockWidth > 2)
+				? growCave(blockHeight, blockWidth, random)
+				: buildRoom(blockHeight, blockWidth, random);
+		long[] water = new long[blockHeight];
+
+		//A pool of water in the middle of some blocks (corridors are carved through it below):
+		if (random.nextInt(100) < POOL_CHANCE && !single) {
+			int poolHeight = blockHeight / 4;
+			int poolWidth = blockWidth / 4;
+			long pool = mask(2 * (poolWidth / 2) + 1) << (hubX - poolWidth / 2);
+			for (int y = hubY - poolHeight / 2; y <= hubY + poolHeight / 2; y++) {
+				water[y] = pool & floor[y];
+			}
+		}
+
+		//Corridors from the hub to the door on each side shared with another block:
+		//	(east and west doors are reached along the hub column, then along the door row;
+		//	north and south doors along the hub row, then along the door column)
+		if (left + blockWidth < width) {
+			int doorY = door(by, bx, EAST, blockHeight);
+			carve(floor, water, hubY, hubX, doorY, hubX);
+			carve(floor, water, doorY, hubX, doorY, blockWidth - 1);
+		}
+		if (bx > 0) {
+			int doorY = door(by, bx - 1, EAST, blockHeight);
+			carve(floor, water, hubY, hubX, doorY, hubX);
+			carve(floor, water, doorY, hubX, doorY, 0);
+		}
+		if (top + blockHeight < height) {
+			int doorX = door(by, bx, SOUTH, blockWidth);
+			carve(floor, water, hubY, hubX, hubY, doorX);
+			carve(floor, water, hubY, doorX, blockHeight - 1, doorX);
+		}
+		if (by > 0) {
+			int doorX = door(by - 1, bx, SOUTH, blockWidth);
+			carve(floor, water, hubY, hubX, hubY, doorX);
+			carve(floor, water, hubY, doorX, 0, doorX);
+		}
+		carve(floor, water, hubY, hubX, hubY, hubX);
+
+		//Write the rows into the map (the traversable tiles are the floor tiles which are not water):
+		for (int y = 0; y < blockHeight; y++) {
+			int offset = (top + y) * width + left;
+			long f = floor[y];
+			long w = water[y];
+			Arrays.fill(symbols, offset, offset + blockWidth, WALL);
+			fillRuns(symbols, offset, f & ~w, FLOOR);
+			fillRuns(symbols, offset, w, WATER);
+			orBits(traversable, offset, f & ~w, blockWidth, fromWord, toWord);
+		}
+
+		//Monsters and items, on floor tiles away from the hub:
+		int monsters = random.nextInt(MAX_MONSTERS_PER_BLOCK + 1);
+		for (int m = 0; m < monsters; m++) {
+			int tile = findFloor(floor, water, blockHeight, blockWidth, hubY, hubX, random);
+			if (tile >= 0) {
+				int type = random.nextInt(MONSTER_NAMES.length);
+				spawns.addMonster(left + tile % BLOCK_SIZE, top + tile / BLOCK_SIZE,
+						MONSTER_NAMES[type], MONSTER_HEALTH[type], MONSTER_ATTACK[type]);
+			}
+		}
+		if (random.nextInt(100) < ITEM_CHANCE) {
+			int tile = findFloor(floor, water, blockHeight, blockWidth, hubY, hubX, random);
+			if (tile >= 0) spawns.addItem(left + tile % BLOCK_SIZE, top + tile / BLOCK_SIZE, ITEMS[random.nextInt(ITEMS.length)]);
+		}
+
+	}
+
+	/*
+	 *  Helper method to build a room: a random rectangle of floor inside the block's outer wall
+	 */
+	private static long[] buildRoom(int blockHeight, int blockWidth, Random random) {
+
+		long[] rows = new long[blockHeight];
+		int innerHeight = Math.max(1, blockHeight - 2);
+		int innerWidth = Math.max(1, blockWidth - 2);
+
+		int roomHeight = innerHeight / 2 + random.nextInt(innerHeight - innerHeight / 2) + 1;
+		int roomWidth = innerWidth / 2 + random.nextInt(innerWidth - innerWidth / 2) + 1;
+		roomHeight = Math.min(roomHeight, innerHeight);
+		roomWidth = Math.min(roomWidth, innerWidth);
+
+		//The room always covers the hub (the middle of the block):
+		int roomTop = Math.min(blockHeight / 2, 1 + random.nextInt(innerHeight - roomHeight + 1));
+		int roomLeft = Math.min(blockWidth / 2, 1 + random.nextInt(innerWidth - roomWidth + 1));
+		roomTop = Math.max(roomTop, blockHeight / 2 - roomHeight + 1);
+		roomLeft = Math.max(roomLeft, blockWidth / 2 - roomWidth + 1);
+
+		long row = mask(roomWidth) << roomLeft;
+		for (int y = roomTop; y < Math.min(roomTop + roomHeight, blockHeight); y++) {
+			rows[y] = row & mask(blockWidth);
+		}
+		return rows;
+
+	}
+
+	/*
+	 *  Helper method to grow a cave: random floor, smoothed by a cellular automaton
+	 *  	(a tile becomes floor if most of the 9 tiles around and including it are floor).
+	 *  Each row is one word, so the rule is applied to a whole row at once with bitwise adders.
+	 */
+	private static long[] growCave(int blockHeight, int blockWidth, Random random) {
+
+		long inner = mask(blockWidth - 2) << 1;
+		long[] rows = new long[blockHeight];
+		long[] next = new long[blockHeight];
+
+		//About 56% floor to start with:
+		for (int y = 1; y < blockHeight - 1; y++) {
+			rows[y] = (random.nextLong() | (random.nextLong() & random.nextLong() & random.nextLong())) & inner;
+		}
+
+		for (int i = 0; i < CAVE_ITERATIONS; i++) {
+			for (int y = 1; y < blockHeight - 1; y++) {
+				next[y] = majority(rows[y - 1], rows[y], rows[y + 1]) & inner;
+			}
+			long[] swap = rows;
+			rows = next;
+			next = swap;
+		}
+		return rows;
+
+	}
+
+	/*
+	 *  Helper method returning, for each bit x of the row, whether at least 5 of the 9 bits
+	 *  	around and including it (in the rows above, this row and below) are set
+	 */
+	private static long majority(long up, long row, long down) {
+
+		//Count the 3 bits of each row (sum bit s, carry bit c):
+		long s1 = (up << 1) ^ up ^ (up >>> 1);
+		long c1 = ((up << 1) & up) | ((up >>> 1) & ((up << 1) ^ up));
+		long s2 = (row << 1) ^ row ^ (row >>> 1);
+		long c2 = ((row << 1) & row) | ((row >>> 1) & ((row << 1) ^ row));
+		long s3 = (down << 1) ^ down ^ (down >>> 1);
+		long c3 = ((down << 1) & down) | ((down >>> 1) & ((down << 1) ^ down));
+
+		//Add the three counts: ones (sum), twos (t) and fours (v), eights (z):
+		long sum = s1 ^ s2 ^ s3;
+		long sumCarry = (s1 & s2) | (s3 & (s1 ^ s2));
+		long twos = c1 ^ c2 ^ c3;
+		long twosCarry = (c1 & c2) | (c3 & (c1 ^ c2));
+		long t = sumCarry ^ twos;
+		long u = sumCarry & twos;
+		long v = twosCarry ^ u;
+		long z = twosCarry & u;
+
+		//Count >= 5:
+		return z | (v & (t | sum));
+
+	}
+
+	/*
+	 *  Helper method to carve a straight corridor of floor between two tiles of a block
+	 *  	(the tiles must share a row or a column)
+	 */
+	private static void carve(long[] floor, long[] water, int y1, int x1, int y2, int x2) {
+		long columns = mask(Math.abs(x2 - x1) + 1) << Math.min(x1, x2);
+		for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+			floor[y] |= columns;
+			water[y] &= ~columns;
+		}
+	}
+
+	/*
+	 *  Helper method returning the position of the door on the east (or south) side of block (by, bx)
+	 *  	along a side of 'length' tiles (never in a corner, unless the side is too short)
+	 */
+	private int door(int by, int bx, int side, int length) {
+		long hash = mix(seed ^ mix((by * 0x9E3779B97F4A7C15L) ^ (bx * 0xC2B2AE3D27D4EB4FL) ^ side));
+		return (length > 2) ? 1 + (int) Math.floorMod(hash, (long) (length - 2)) : 0;
+	}
+
+	/*
+	 *  Helper method to find a random floor tile of a block, other than its hub
+	 *  	Returns the tile number in the block (y * BLOCK_SIZE + x), or -1 if none was found
+	 */
+	private static int findFloor(long[] floor, long[] water, int blockHeight, int blockWidth,
+			int hubY, int hubX, Random random) {
+
+		for (int i = 0; i < PLACEMENT_ATTEMPTS; i++) {
+			int y = random.nextInt(blockHeight);
+			int x = random.nextInt(blockWidth);
+			if (((floor[y] & ~water[y]) >>> x & 1) != 0 && (y != hubY || x != hubX)) return y * BLOCK_SIZE + x;
+		}
+		return -1;
+
+	}
+
+	/*
+	 *  Helper method to set each run of tiles whose bits are set to 'symbol'
+	 *  	(starting at tile number 'offset'), a whole run at a time
+	 */
+	private static void fillRuns(byte[] symbols, int offset, long bits, byte symbol) {
+		while (bits != 0) {
+			int start = Long.numberOfTrailingZeros(bits);
+			int end = start + Long.numberOfTrailingZeros(~(bits >>> start));
+			Arrays.fill(symbols, offset + start, offset + Math.min(end, 64), symbol);
+			bits = (end >= 64) ? 0 : bits & (-1L << end);
+		}
+	}
+
+	/*
+	 *  Helper method to set the bits of a row of tiles (starting at tile number 'offset')
+	 *  	in the traversable bitset, from the lowest 'length' bits of 'bits'
+	 *  	(the row can straddle two words of the bitset; only words in [fromWord, toWord) are written)
+	 */
+	private static void orBits(long[] traversable, int offset, long bits, int length, int fromWord, int toWord) {
+		bits &= mask(length);
+		int word = offset >>> 6;
+		int shift = offset & 63;
+		if (word >= fromWord && word < toWord) traversable[word] |= bits << shift;
+		if (shift + length > 64 && word + 1 >= fromWord && word + 1 < toWord) traversable[word + 1] |= bits >>> (64 - shift);
+	}
+
+	/*
+	 *  Helper method to work out traversable word number w from the terrain symbols
+	 */
+	private static long traversableWord(byte[] symbols, int w) {
+		long word = 0;
+		int start = 64 * w;
+		int end = Math.min(64, symbols.length - start);
+		for (int i = 0; i < end; i++) {
+			if (Terrain.isTraversable((char) (symbols[start + i] & 0xFF))) word |= 1L << i;
+		}
+		return word;
+	}
+
+	/*
+	 *  Helper method to place the player at the hub of the top-left block,
+	 *  	and the warp stone at the hub of the bottom-right block (or the far corner of a single block)
+	 */
+	private static void placePlayerAndWarpStone(int height, int width, Level level) {
+
+		level.setPlayerPosition(Math.min(BLOCK_SIZE, width) / 2, Math.min(BLOCK_SIZE, height) / 2);
+
+		int lastTop = (height - 1) / BLOCK_SIZE * BLOCK_SIZE;
+		int lastLeft = (width - 1) / BLOCK_SIZE * BLOCK_SIZE;
+		if (lastTop == 0 && lastLeft == 0) {
+			//Single block: the far end of the corridor to the hub from its bottom-right
+			Map map = level.getMap();
+			for (int y = height - 2; y > 0; y--) {
+				for (int x = width - 2; x > 0; x--) {
+					if (map.isTraversable(y, x) && (y != height / 2 || x != width / 2)) {
+						level.addItem(x, y, WARP_STONE);
+						return;
+					}
+				}
+			}
+		}
+		level.addItem(lastLeft + (width - lastLeft) / 2, lastTop + (height - lastTop) / 2, WARP_STONE);
+
+	}
+
+	/*
+	 *  Helper method returning a bit mask of the lowest 'bits' bits
+	 */
+	private static long mask(int bits) {
+		return (bits >= 64) ? -1L : (1L << Math.max(bits, 0)) - 1;
+	}
+
+	/*
+	 *  Helper method to scramble a number (so nearby seeds and coordinates give unrelated values)
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 4) {
+			System.out.println("Usage: java LevelGenerator <height> <width> <seed> <output file (.dat or .lvl)> [threads]");
+			return;
+		}
+
+		try {
+
+			int threads = (args.length > 4) ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+			ForkJoinPool pool = new ForkJoinPool(threads);
+
+			long start = System.nanoTime();
+			Level level = new LevelGenerator(Long.parseLong(args[2]))
+					.generate(Integer.parseInt(args[0]), Integer.parseInt(args[1]), pool);
+			long generated = System.nanoTime();
+			pool.shutdown();
+
+			if (args[3].endsWith(BinaryLevelFormat.FILE_EXTENSION)) {
+				BinaryLevelFormat.write(level, args[3]);
+			} else {
+				LevelLoader.write(level, args[3]);
+			}
+
+			System.out.println(String.format("Generated %s (%d monsters, %d items) in %.1f ms on %d threads, written in %.1f ms",
+					args[3], level.getMonsters().size(), level.getItems().size(),
+					(generated - start) / 1e6, threads, (System.nanoTime() - generated) / 1e6));
+
+		} catch (IOException e) {
+			System.out.println("The following error occured while writing the level:");
+			System.out.println(e.getMessage());
+		} catch (Exception e) {
+			System.out.println("The following error occured while generating the level:");
+			System.out.println(e.getMessage());
+		}
+
+	}
+
+}
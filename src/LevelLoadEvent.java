@@ -0,0 +1,39 @@
+/**
+ * Class for LevelLoadEvent objects
+ * Java Flight Recorder event for a level being fetched through the LevelCache:
+ * 	the duration is the time taken to read and parse the file (or to find it in the cache).
+ * Disabled by default, like TurnEvent (enable "rogue.LevelLoad" to record it).
+ * @author: Damian Curran
+ *
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rogue.LevelLoad")
+@Label("Level Load")
+@Category("Rogue")
+@Description("A level file read and parsed (or found in the level cache)")
+@Enabled(false)
+public class LevelLoadEvent extends Event {
+
+	@Label("File")
+	String file;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+
+	@Label("Binary")
+	@Description("True for a binary level file (.lvl), false for a text map file")
+	boolean binary;
+
+	@Label("Cache Hit")
+	boolean cacheHit;
+
+}
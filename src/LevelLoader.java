@@ -0,0 +1,372 @@
+/**
+ * Class for LevelLoader objects
+ * Streams a map file through a buffered channel and builds the Level in a single pass:
+ * 	terrain rows are copied straight into the map, and entity lines are parsed
+ * 	without splitting them into Strings.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class LevelLoader {
+
+	private final static int BUFFER_SIZE = 64 * 1024;
+	private final static int END_OF_FILE = -1;
+
+	//Read buffer, and its backing array (read directly for speed):
+	private ByteBuffer buffer;
+	private byte[] bytes;
+	private int position;
+	private int limit;
+	private FileChannel channel;
+
+	//Reusable buffers for one terrain row and one entity line token:
+	private byte[] row;
+	private byte[] token;
+	private int tokenLength;
+
+	private int lineNumber;
+
+	private final static byte[] PLAYER_RECORD = "player".getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] MONSTER_RECORD = "monster".getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] ITEM_RECORD = "item".getBytes(StandardCharsets.US_ASCII);
+	private final static byte[] NEW_LINE = {'\n'};
+
+	/*
+	 *  Constructor
+	 *  The same loader (and its buffers) can be reused for any number of loads.
+	 */
+	public LevelLoader() {
+		this.bytes = new byte[BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(bytes);
+		this.row = new byte[0];
+		this.token = new byte[64];
+	}
+
+	/*
+	 *  Load the map file into a new Level
+	 *  Throws GameLevelNotFoundException if the file cannot be opened or read,
+	 *  	and IllegalArgumentException (with a description) if the file content is invalid.
+	 */
+	public Level load(String filename) throws GameLevelNotFoundException {
+
+		try {
+			channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			throw new GameLevelNotFoundException();
+		} catch (IOException e) {
+			throw new GameLevelNotFoundException("Error reading map file.");
+		}
+
+		try {
+			position = 0;
+			limit = 0;
+			lineNumber = 1;
+			return parse();
+		} catch (IOException e) {
+			throw new GameLevelNotFoundException("Error reading map file.");
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				//Nothing else to do - file has been read (or failed) already
+			}
+			channel = null;
+		}
+
+	}
+
+	/*
+	 *  Write a level to a map file, in the text format read by load
+	 */
+	public static void write(Level level, String filename) throws IOException {
+
+		GridMap map = level.getMap();
+		int width = map.getWidth();
+		ByteBuffer symbols = map.getSymbols();
+		ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+		//(The file may be being read meanwhile, so it is replaced, never rewritten in place)
+		try (AtomicFileWriter writer = new AtomicFileWriter(filename)) {
+
+			FileChannel file = writer.getChannel();
+			put(file, out, (width + " " + map.getHeight() + "\n").getBytes(StandardCharsets.US_ASCII));
+
+			//Terrain rows, copied straight from the map:
+			for (int y = 0; y < map.getHeight(); y++) {
+				symbols.limit(y * width + width).position(y * width);
+				while (symbols.hasRemaining()) {
+					if (!out.hasRemaining()) flush(file, out);
+					int length = Math.min(symbols.remaining(), out.remaining());
+					ByteBuffer part = symbols.duplicate();
+					part.limit(part.position() + length);
+					out.put(part);
+					symbols.position(symbols.position() + length);
+				}
+				put(file, out, NEW_LINE);
+			}
+
+			//Entity lines:
+			if (level.hasPlayerPosition()) {
+				put(file, out, ("player " + level.getPlayerPosX() + " " + level.getPlayerPosY() + "\n")
+						.getBytes(StandardCharsets.US_ASCII));
+			}
+			for (Monster m : level.getMonsters()) {
+				put(file, out, ("monster " + m.getPosX() + " " + m.getPosY() + " " + m.getName() + " "
+						+ m.getMaxHealth() + " " + m.getAttackDamage() + "\n").getBytes(StandardCharsets.UTF_8));
+			}
+			for (Item i : level.getItems()) {
+				put(file, out, ("item " + i.getPosX() + " " + i.getPosY() + " " + i.getSymbol() + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+			flush(file, out);
+			writer.commit();
+
+		}
+
+	}
+
+	/*
+	 *  Helper methods for write: add bytes to the write buffer, and write the buffer to the file
+	 */
+	private static void put(FileChannel file, ByteBuffer out, byte[] data) throws IOException {
+		if (out.remaining() < data.length) flush(file, out);
+		out.put(data);
+	}
+
+	private static void flush(FileChannel file, ByteBuffer out) throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			file.write(out);
+		}
+		out.clear();
+	}
+
+	/*
+	 *  Helper method to parse the whole file: header, terrain rows, then entity lines
+	 */
+	private Level parse() throws IOException {
+
+		//Header: map width and height
+		int mapWidth = readInt();
+		int mapHeight = readInt();
+		if (mapWidth < 0 || mapHeight < 0) {
+			throw new IllegalArgumentException("Invalid map dimensions on line 1.");
+		}
+		if ((long) mapWidth * mapHeight > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Map dimensions too large on line 1.");
+		}
+		skipLine();
+
+		GridMap map = new GridMap(mapHeight, mapWidth);
+		Level level = new Level(map);
+
+		//Terrain rows, copied directly into the map:
+		if (row.length < mapWidth) row = new byte[mapWidth];
+		for (int i = 0; i < mapHeight; i++) {
+			int length = readTerrainRow(mapWidth);
+			map.updateTerrainRow(i, row, length);
+		}
+
+		//Entity lines ("player x y", "monster x y name health attack", "item x y symbol"):
+		while (skipBlanks() != END_OF_FILE) {
+
+			if (peek() == '\n' || peek() == '\r') {
+				skipLine();
+				continue;
+			}
+
+			readToken();
+
+			if (tokenEquals(PLAYER_RECORD)) {
+				int x = readInt();
+				int y = readInt();
+				level.setPlayerPosition(x, y);
+
+			} else if (tokenEquals(MONSTER_RECORD)) {
+				int x = readInt();
+				int y = readInt();
+				skipBlanks();
+				readToken();
+				String name = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+				int health = readInt();
+				int attack = readInt();
+				level.addMonster(x, y, name, health, attack);
+
+			} else if (tokenEquals(ITEM_RECORD)) {
+				int x = readInt();
+				int y = readInt();
+				skipBlanks();
+				readToken();
+				level.addItem(x, y, (char) (token[0] & 0xFF));
+
+			}
+			//(Lines of any other type are ignored)
+
+			skipLine();
+
+		}
+
+		return level;
+
+	}
+
+	/*
+	 *  Helper method to read one terrain row into the row buffer. Returns the row length.
+	 */
+	private int readTerrainRow(int mapWidth) throws IOException {
+
+		if (peek() == END_OF_FILE) {
+			throw new IllegalArgumentException("Map file ends before all terrain rows (line " + lineNumber + ").");
+		}
+
+		int length = 0;
+		int b = read();
+		while (b != '\n' && b != END_OF_FILE) {
+			if (b != '\r') {
+				if (length == mapWidth) {
+					throw new IllegalArgumentException("Terrain row on line " + lineNumber + " is wider than the map.");
+				}
+				row[length++] = (byte) b;
+			}
+			b = read();
+		}
+		lineNumber++;
+		return length;
+
+	}
+
+	/*
+	 *  Helper method to read a (possibly negative) integer, after any blanks
+	 */
+	private int readInt() throws IOException {
+
+		skipBlanks();
+		boolean negative = false;
+		if (peek() == '-') {
+			negative = true;
+			read();
+		}
+
+		//(Accumulated as a negative number, which has room for Integer.MIN_VALUE)
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long value = 0;
+		int digits = 0;
+		while (peek() >= '0' && peek() <= '9') {
+			value = value * 10 - (read() - '0');
+			digits++;
+			if (value < limit) {
+				throw new IllegalArgumentException("Number too large on line " + lineNumber + ".");
+			}
+		}
+
+		if (digits == 0) {
+			throw new IllegalArgumentException("Expected a number on line " + lineNumber + ".");
+		}
+		return (int) (negative ? value : -value);
+
+	}
+
+	/*
+	 *  Helper method to read the next word (up to a blank or line end) into the token buffer
+	 */
+	private void readToken() throws IOException {
+
+		tokenLength = 0;
+		int b = peek();
+		while (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != END_OF_FILE) {
+			if (tokenLength == token.length) {
+				byte[] larger = new byte[token.length * 2];
+				System.arraycopy(token, 0, larger, 0, tokenLength);
+				token = larger;
+			}
+			token[tokenLength++] = (byte) read();
+			b = peek();
+		}
+
+		if (tokenLength == 0) {
+			throw new IllegalArgumentException("Missing value on line " + lineNumber + ".");
+		}
+
+	}
+
+	/*
+	 *  Helper method to compare the token buffer with a keyword
+	 */
+	private boolean tokenEquals(byte[] keyword) {
+
+		if (tokenLength != keyword.length) return false;
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != keyword[i]) return false;
+		}
+		return true;
+
+	}
+
+	/*
+	 *  Helper method to skip spaces and tabs. Returns the next byte (not consumed).
+	 */
+	private int skipBlanks() throws IOException {
+
+		int b = peek();
+		while (b == ' ' || b == '\t') {
+			read();
+			b = peek();
+		}
+		return b;
+
+	}
+
+	/*
+	 *  Helper method to skip the rest of the current line (including the line end)
+	 */
+	private void skipLine() throws IOException {
+
+		int b = read();
+		while (b != '\n' && b != END_OF_FILE) {
+			b = read();
+		}
+		lineNumber++;
+
+	}
+
+	/*
+	 *  Helper methods to return the next byte of the file, or END_OF_FILE
+	 *  	(read consumes the byte, peek does not)
+	 */
+	private int read() throws IOException {
+		if (position == limit && !fill()) return END_OF_FILE;
+		return bytes[position++] & 0xFF;
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && !fill()) return END_OF_FILE;
+		return bytes[position] & 0xFF;
+	}
+
+	/*
+	 *  Helper method to read the next block of the file into the buffer
+	 *  Returns false if the end of the file has been reached.
+	 */
+	private boolean fill() throws IOException {
+
+		buffer.clear();
+		int count = channel.read(buffer);
+		while (count == 0) {
+			count = channel.read(buffer);
+		}
+		if (count < 0) return false;
+		position = 0;
+		limit = count;
+		return true;
+
+	}
+
+}
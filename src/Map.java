@@ -1,39 +1,30 @@
 /**
  * Class for Map objects
+ * The terrain grid a world is played on, of 'height' x 'width' tiles.
+ * Subclasses keep the terrain in their own way:
+ * 	- GridMap holds every tile in memory (as levels do), and can be copied and written to level files.
+ * 	- ChunkedMap only keeps the chunks of tiles near the player in memory, for maps larger than the heap.
  * @author: Damian Curran
  *
  */
 
-public class Map {
+public abstract class Map {
 
 	private int height;
 	private int width;
-	private Terrain[][] elements;
 	
 	/*
 	 *  Constructor
 	 */
-	public Map(int h, int w) {
-		
+	protected Map(int h, int w) {
 		this.height = h;
 		this.width = w;
-		elements = new Terrain[height][width];
-		
-		//Initialise element array of default Terrain objects:
-		for (int i = 0; i < height; i ++) {
-			for (int j = 0; j < width; j ++) {
-				elements[i][j] = new Terrain();
-			}
-		}
-		
-	}	
+	}
 
 	/*
 	 *  Setter methods:
 	 */
-	public void setElement(int y, int x, char c, boolean b) {
-		elements[y][x].set(c, b);	
-	}
+	public abstract void setElement(int y, int x, char c, boolean b);
 	
 	/*
 	 *  Getter methods:
@@ -46,25 +37,60 @@ public class Map {
 		return width;
 	}
 	
-	public Terrain getElement(int y, int x) {
-		return elements[y][x];
-	}
+	public abstract Terrain getElement(int y, int x);
 	
 	/*
 	 *  Update terrain element:
 	 *  Called during map load from file to override default terrain:
 	 */
 	public void updateTerrain(int y, int x, char c) {
-		elements[y][x].set(c);
+		setElement(y, x, c, Terrain.isTraversable(c));
 		
 	}
 	
+	/*
+	 *  Update a row of terrain elements, starting at (y,0), from single-byte symbols
+	 *  Called during map load from file to copy a whole row of terrain at once
+	 */
+	public void updateTerrainRow(int y, byte[] row, int length) {
+		if (length > width) {
+			throw new ArrayIndexOutOfBoundsException("Terrain row longer than map width.");
+		}
+		for (int x = 0; x < length; x++) {
+			updateTerrain(y, x, (char) (row[x] & 0xFF));
+		}
+	}
+	
 	/*
 	 *  Check if terrain element is traversable
 	 *  Used during unit movement operations to check if adjacent movement is possible
 	 */
-	public boolean isTraversable(int y, int x) {
-		return elements[y][x].getTraversable();
+	public abstract boolean isTraversable(int y, int x);
+	
+	/*
+	 *  Called whenever the player moves to (y,x)
+	 *  Maps which only keep the terrain near the player in memory (see ChunkedMap) use this
+	 *  	to release the terrain far from the player. By default, does nothing.
+	 */
+	public void focusOn(int y, int x) {
+	}
+	
+	/*
+	 *  Helper method to check (y,x) is on the map
+	 */
+	protected void checkBounds(int y, int x) {
+		if (y < 0 || y >= height || x < 0 || x >= width) {
+			throw new ArrayIndexOutOfBoundsException("Map position (" + x + "," + y + ") out of bounds.");
+		}
+	}
+	
+	/*
+	 *  Helper method to check a terrain symbol fits in one byte (as every map stores it)
+	 */
+	protected static void checkSymbol(char c) {
+		if (c > 0xFF) {
+			throw new IllegalArgumentException("Unsupported terrain symbol '" + c + "'.");
+		}
 	}
 	
 }
@@ -0,0 +1,204 @@
+/**
+ * Class for the Metrics registry
+ * Process-wide registry of named latency histograms and counters, used to see where the time goes
+ * 	(eg. each phase of a turn in World.runWorld, and level loading in GameEngine).
+ * Histograms and counters are created on first use, are lock-free, and are shared by every
+ * 	world and game running in the process. Once exportToJmx() has been called, each one is also
+ * 	exported via JMX, under the domain JMX_DOMAIN (eg. to watch them in JConsole while a game runs).
+ * 	(Export is not automatic because starting the platform MBean server takes a noticeable time.)
+ * Metrics can be turned off with -Drogue.metrics=false: timings are then not taken at all.
+ * @author: Damian Curran
+ *
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class Metrics {
+
+	public final static boolean ENABLED = !"false".equals(System.getProperty("rogue.metrics"));
+	public final static String JMX_DOMAIN = "rogue";
+
+	private final static ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final static ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private static boolean exporting = false;
+
+	/*
+	 *  JMX interfaces of histograms and counters:
+	 */
+	public interface LatencyMXBean {
+		long getCount();
+		double getMeanMicros();
+		double getP50Micros();
+		double getP90Micros();
+		double getP99Micros();
+		double getMaxMicros();
+	}
+
+	public interface CounterMXBean {
+		long getCount();
+	}
+
+	/*
+	 *  Lock-free counter
+	 */
+	public static class Counter implements CounterMXBean {
+
+		private String name;
+		private LongAdder count = new LongAdder();
+
+		private Counter(String name) {
+			this.name = name;
+		}
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(long n) {
+			count.add(n);
+		}
+
+		public void reset() {
+			count.reset();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+	}
+
+	private Metrics() {
+		//Static registry only
+	}
+
+	/*
+	 *  Returns the histogram with the given name (created on first use)
+	 */
+	public static LatencyHistogram histogram(String name) {
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram != null) return histogram;
+		histogram = new LatencyHistogram(name);
+		LatencyHistogram existing = histograms.putIfAbsent(name, histogram);
+		if (existing != null) return existing;
+		export("Latency", name, histogram);
+		return histogram;
+	}
+
+	/*
+	 *  Returns the counter with the given name (created on first use)
+	 */
+	public static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter != null) return counter;
+		counter = new Counter(name);
+		Counter existing = counters.putIfAbsent(name, counter);
+		if (existing != null) return existing;
+		export("Counter", name, counter);
+		return counter;
+	}
+
+	/*
+	 *  Export every histogram and counter via JMX, now and as they are created (if metrics are on)
+	 */
+	public static synchronized void exportToJmx() {
+		if (!ENABLED || exporting) return;
+		exporting = true;
+		for (LatencyHistogram histogram : histograms.values()) {
+			export("Latency", histogram.getName(), histogram);
+		}
+		for (Counter counter : counters.values()) {
+			export("Counter", counter.getName(), counter);
+		}
+	}
+
+	/*
+	 *  Returns the time now (in nanoseconds) to time a phase from, or 0 if metrics are off
+	 */
+	public static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/*
+	 *  Record the time since 'start' in the histogram, and return the time now
+	 *  	(so consecutive phases can be timed with one clock read each).
+	 *  Does nothing (and returns 0) if 'start' is 0, ie. metrics are off or this run of the phases is not timed.
+	 */
+	public static long lap(LatencyHistogram histogram, long start) {
+		if (start == 0) return 0;
+		long now = System.nanoTime();
+		histogram.record(now - start);
+		return now;
+	}
+
+	/*
+	 *  Clear every histogram and counter
+	 */
+	public static void reset() {
+		for (LatencyHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+	}
+
+	/*
+	 *  Returns a table of every histogram (in microseconds) and counter, sorted by name
+	 */
+	public static String report() {
+
+		StringBuilder report = new StringBuilder();
+		if (!ENABLED) report.append("(Metrics are off: run with -Drogue.metrics=true to record them.)\n");
+
+		List<String> names = new ArrayList<String>(histograms.keySet());
+		Collections.sort(names);
+		report.append(String.format("%-32s %10s %10s %10s %10s %10s %10s%n",
+				"Latency (us)", "count", "mean", "p50", "p90", "p99", "max"));
+		for (String name : names) {
+			LatencyHistogram h = histograms.get(name);
+			report.append(String.format("%-32s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name,
+					h.getCount(), h.getMeanMicros(), h.getP50Micros(), h.getP90Micros(), h.getP99Micros(), h.getMaxMicros()));
+		}
+
+		names = new ArrayList<String>(counters.keySet());
+		Collections.sort(names);
+		if (!names.isEmpty()) {
+			report.append(String.format("%n%-32s %10s%n", "Counter", "count"));
+			for (String name : names) {
+				report.append(String.format("%-32s %10d%n", name, counters.get(name).getCount()));
+			}
+		}
+
+		return report.toString();
+
+	}
+
+	/*
+	 *  Helper method to register a histogram or counter with the platform MBean server (once exporting)
+	 *  	(If it cannot be registered, it is still recorded and reported, just not exported.)
+	 */
+	private static synchronized void export(String type, String name, Object bean) {
+		if (!exporting) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(bean, new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name)));
+		} catch (JMException | SecurityException e) {
+			//Not exported
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 /**
  * Class for Monster objects
+ * While the monster is in a MonsterStore, its data is kept in the store's arrays,
+ * 	and the Monster object is a view of it (see MonsterStore).
  * @author: Damian Curran
  *
  */
@@ -8,6 +10,7 @@ public class Monster extends Unit{
 
 	private int maxHealth;
 	private int attackDamage;
+	private MonsterStore store;	//Store holding the monster's data (null if not in a store)
 	
 	/*
 	 *  Constructor
@@ -33,18 +36,117 @@ public class Monster extends Unit{
 	 *  Getter methods
 	 */
 	public int getMaxHealth() {
-		return this.maxHealth;
+		return (store == null) ? this.maxHealth : store.getMaxHealth(this);
 	}
 	
 	public int getAttackDamage() {
-		return this.attackDamage;
+		return (store == null) ? this.attackDamage : store.getAttackDamage(this);
+	}
+	
+	@Override
+	public int getCurrentHealth() {
+		return (store == null) ? super.getCurrentHealth() : store.getCurrentHealth(this);
+	}
+	
+	@Override
+	public int getPosX() {
+		return (store == null) ? super.getPosX() : store.getPosX(this);
+	}
+	
+	@Override
+	public int getPosY() {
+		return (store == null) ? super.getPosY() : store.getPosY(this);
+	}
+	
+	@Override
+	public char getSymbol() {
+		return (store == null) ? super.getSymbol() : store.getSymbol(this);
 	}
 	
 	/*
-	 *  Setter method
+	 *  Setter methods
 	 */
 	public void setAttackDamage(int attackDamage) {
-		this.attackDamage = attackDamage;
+		if (store == null) {
+			this.attackDamage = attackDamage;
+		} else {
+			store.setAttackDamage(this, attackDamage);
+		}
+	}
+	
+	@Override
+	public void setCurrentHealth(int newHealth) {
+		if (store == null) {
+			super.setCurrentHealth(newHealth);
+		} else {
+			store.setCurrentHealth(this, newHealth);
+		}
+	}
+	
+	@Override
+	public void setPosition(int x, int y) {
+		if (store == null) {
+			super.setPosition(x, y);
+		} else {
+			store.setPosition(this, x, y);
+		}
+	}
+	
+	@Override
+	public void setPosX(int x) {
+		setPosition(x, getPosY());
+	}
+	
+	@Override
+	public void setPosY(int y) {
+		setPosition(getPosX(), y);
+	}
+	
+	@Override
+	public void setSymbol(char c) {
+		if (store == null) {
+			super.setSymbol(c);
+		} else {
+			store.setSymbol(this, c);
+		}
+	}
+	
+	/*
+	 *  Renderable Interface methods:
+	 */
+	@Override
+	public void render() {
+		System.out.print(getSymbol());
+	}
+	
+	@Override
+	public void render(char[] frame, int index) {
+		frame[index] = getSymbol();
+	}
+	
+	/*
+	 *  Store methods (used by MonsterStore only):
+	 *  attach() is called once the store holds the monster's data,
+	 *  	and detach() copies the data back to the monster before it is removed from the store.
+	 */
+	void attach(MonsterStore store) {
+		this.store = store;
+	}
+	
+	void detach() {
+		
+		int x = getPosX();
+		int y = getPosY();
+		int health = getCurrentHealth();
+		int attack = getAttackDamage();
+		char c = getSymbol();
+		
+		this.store = null;
+		setPosition(x, y);
+		setCurrentHealth(health);
+		setAttackDamage(attack);
+		setSymbol(c);
+		
 	}
 	
 }
@@ -0,0 +1,177 @@
+/**
+ * Class for MonsterStore objects
+ * An EntityStore of monsters which keeps the monsters' data (position, health, attack damage
+ * 	and symbol) in parallel primitive arrays, indexed by dense index, rather than in the
+ * 	Monster objects. The per-turn passes over many monsters (eg. movement) then read
+ * 	consecutive array entries instead of following a reference to each monster.
+ * While a monster is in the store, the Monster object is a view of its entries in the arrays
+ * 	(see Monster): the Monster API works as before, and changes made through it go to the arrays.
+ * 	When the monster is removed, its data is copied back to the Monster object.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.Arrays;
+
+public class MonsterStore extends EntityStore<Monster> {
+
+	private int[] posY;
+	private int[] posX;
+	private int[] currentHealth;
+	private int[] maxHealth;
+	private int[] attackDamage;
+	private char[] symbol;
+
+	/*
+	 *  Constructor
+	 */
+	public MonsterStore() {
+		super();
+		int capacity = getCapacity();
+		this.posY = new int[capacity];
+		this.posX = new int[capacity];
+		this.currentHealth = new int[capacity];
+		this.maxHealth = new int[capacity];
+		this.attackDamage = new int[capacity];
+		this.symbol = new char[capacity];
+	}
+
+	/*
+	 *  Add monster (inactive), copying its data into the arrays, and return its handle
+	 */
+	@Override
+	public long add(Monster m) {
+
+		//(Read the monster's data first: if it is a view of another store, the view is replaced below)
+		int y = m.getPosY();
+		int x = m.getPosX();
+		int health = m.getCurrentHealth();
+		int max = m.getMaxHealth();
+		int attack = m.getAttackDamage();
+		char c = m.getSymbol();
+
+		long handle = super.add(m);
+		int i = indexOf(m);
+		posY[i] = y;
+		posX[i] = x;
+		currentHealth[i] = health;
+		maxHealth[i] = max;
+		attackDamage[i] = attack;
+		symbol[i] = c;
+		m.attach(this);
+		return handle;
+
+	}
+
+	/*
+	 *  Remove monster, copying its data back to the Monster object. Returns false if it is not in the store.
+	 */
+	@Override
+	public boolean remove(Monster m) {
+		if (!contains(m)) return false;
+		m.detach();
+		return super.remove(m);
+	}
+
+	/*
+	 *  Getter methods, by dense index (used by the per-turn passes):
+	 */
+	public Monster getMonster(int index) {
+		return getAt(index);
+	}
+
+	public int getPosY(int index) {
+		return posY[index];
+	}
+
+	public int getPosX(int index) {
+		return posX[index];
+	}
+
+	/*
+	 *  Getter and setter methods for monster views (the monster must be in the store):
+	 */
+	int getPosY(Monster m) {
+		return posY[indexOf(m)];
+	}
+
+	int getPosX(Monster m) {
+		return posX[indexOf(m)];
+	}
+
+	int getCurrentHealth(Monster m) {
+		return currentHealth[indexOf(m)];
+	}
+
+	int getMaxHealth(Monster m) {
+		return maxHealth[indexOf(m)];
+	}
+
+	int getAttackDamage(Monster m) {
+		return attackDamage[indexOf(m)];
+	}
+
+	char getSymbol(Monster m) {
+		return symbol[indexOf(m)];
+	}
+
+	void setPosition(Monster m, int x, int y) {
+		int i = indexOf(m);
+		posX[i] = x;
+		posY[i] = y;
+	}
+
+	void setCurrentHealth(Monster m, int health) {
+		currentHealth[indexOf(m)] = health;
+	}
+
+	void setAttackDamage(Monster m, int attack) {
+		attackDamage[indexOf(m)] = attack;
+	}
+
+	void setSymbol(Monster m, char c) {
+		symbol[indexOf(m)] = c;
+	}
+
+	/*
+	 *  EntityStore column methods:
+	 */
+	@Override
+	protected void growColumns(int capacity) {
+		posY = Arrays.copyOf(posY, capacity);
+		posX = Arrays.copyOf(posX, capacity);
+		currentHealth = Arrays.copyOf(currentHealth, capacity);
+		maxHealth = Arrays.copyOf(maxHealth, capacity);
+		attackDamage = Arrays.copyOf(attackDamage, capacity);
+		symbol = Arrays.copyOf(symbol, capacity);
+	}
+
+	@Override
+	protected void copyColumns(int from, int to) {
+		posY[to] = posY[from];
+		posX[to] = posX[from];
+		currentHealth[to] = currentHealth[from];
+		maxHealth[to] = maxHealth[from];
+		attackDamage[to] = attackDamage[from];
+		symbol[to] = symbol[from];
+	}
+
+	@Override
+	protected void swapColumns(int i, int j) {
+		swap(posY, i, j);
+		swap(posX, i, j);
+		swap(currentHealth, i, j);
+		swap(maxHealth, i, j);
+		swap(attackDamage, i, j);
+		char c = symbol[i];
+		symbol[i] = symbol[j];
+		symbol[j] = c;
+	}
+
+	private static void swap(int[] column, int i, int j) {
+		int value = column[i];
+		column[i] = column[j];
+		column[j] = value;
+	}
+
+}
@@ -0,0 +1,16 @@
+/**
+ * Interface for MoveSource objects
+ * A source of player moves for the world loop (eg. keyboard, script file or AI policy)
+ * @author: Damian Curran
+ *
+ */
+
+public interface MoveSource {
+
+	/*
+	 *  Method, when implemented, will return the next move ("w", "a", "s", "d", "home", ...)
+	 *  	for the player in the given world, or null if there are no more moves.
+	 */
+	public String nextMove(World world);
+
+}
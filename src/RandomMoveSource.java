@@ -0,0 +1,30 @@
+/**
+ * Class for RandomMoveSource objects
+ * Generates a random stream of moves from a seed (the same seed always gives the same moves).
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.Random;
+
+public class RandomMoveSource implements MoveSource {
+
+	private final static String[] MOVES = {"w", "a", "s", "d"};
+
+	private Random random;
+
+	/*
+	 *  Constructor
+	 */
+	public RandomMoveSource(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/*
+	 *  MoveSource Interface method:
+	 */
+	public String nextMove(World world) {
+		return MOVES[random.nextInt(MOVES.length)];
+	}
+
+}
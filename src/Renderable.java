@@ -11,4 +11,10 @@ public interface Renderable {
 	 */
 	public void render();
 	
+	/*
+	 *  Method, when implemented, will write the symbol for that location on map
+	 *  	into a frame buffer at the given index (used by FrameBuffer to build a whole frame)
+	 */
+	public void render(char[] frame, int index);
+	
 }
@@ -0,0 +1,49 @@
+/**
+ * Class for ScatteredTerrainGenerator objects
+ * Generates chunks of open ground with scattered clumps of wall ('#') and water ('~') tiles.
+ * Each chunk is generated from the seed and its own coordinates, so the same seed
+ * 	always gives the same map, whatever order its chunks are generated in.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.Random;
+
+public class ScatteredTerrainGenerator implements ChunkGenerator {
+
+	private final static int CLUMPS_PER_CHUNK = 24;
+	private final static int MAX_CLUMP_SIZE = 6;
+
+	private long seed;
+
+	/*
+	 *  Constructor
+	 */
+	public ScatteredTerrainGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/*
+	 *  ChunkGenerator Interface method:
+	 */
+	public void generate(int chunkY, int chunkX, byte[] symbols) {
+
+		int size = ChunkedMap.CHUNK_SIZE;
+		Random random = new Random(seed ^ (chunkY * 0x9E3779B97F4A7C15L) ^ (chunkX * 0xC2B2AE3D27D4EB4FL));
+
+		for (int c = 0; c < CLUMPS_PER_CHUNK; c++) {
+			byte symbol = (byte) (random.nextInt(3) == 0 ? '~' : '#');
+			int y = random.nextInt(size);
+			int x = random.nextInt(size);
+			int height = 1 + random.nextInt(MAX_CLUMP_SIZE);
+			int width = 1 + random.nextInt(MAX_CLUMP_SIZE);
+			for (int i = y; i < Math.min(y + height, size); i++) {
+				for (int j = x; j < Math.min(x + width, size); j++) {
+					symbols[i * size + j] = symbol;
+				}
+			}
+		}
+
+	}
+
+}
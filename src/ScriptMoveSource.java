@@ -0,0 +1,57 @@
+/**
+ * Class for ScriptMoveSource objects
+ * Plays a fixed script of moves, read from a file (one move per line) or given directly.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class ScriptMoveSource implements MoveSource {
+
+	private String[] moves;
+	private int next;
+
+	/*
+	 *  Constructor
+	 */
+	public ScriptMoveSource(String[] moves) {
+		this.moves = moves;
+		this.next = 0;
+	}
+
+	/*
+	 *  Create a move source from a script file (one move per line)
+	 */
+	public static ScriptMoveSource fromFile(String filename) throws IOException {
+		List<String> lines = Files.readAllLines(Paths.get(filename), StandardCharsets.UTF_8);
+		return new ScriptMoveSource(lines.toArray(new String[lines.size()]));
+	}
+
+	/*
+	 *  MoveSource Interface method:
+	 */
+	public String nextMove(World world) {
+		return (next < moves.length) ? moves[next++] : null;
+	}
+
+	/*
+	 *  Returns a new move source playing the same script from the first move
+	 *  	(the moves themselves are shared, so copies are cheap)
+	 */
+	public ScriptMoveSource copy() {
+		return new ScriptMoveSource(moves);
+	}
+
+	/*
+	 *  Start the script again from the first move (so one script can be replayed in several worlds)
+	 */
+	public void rewind() {
+		next = 0;
+	}
+
+}
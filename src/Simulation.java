@@ -0,0 +1,134 @@
+/**
+ * Class for Simulation objects
+ * Plays a level many times in headless mode (no rendering or messages), with moves
+ * 	from a script, a random stream or an AI policy, and reports outcome statistics.
+ * Usage: java Simulation <level file> <games> [random | seek | script=<file>] [seed] [max turns]
+ * 	(the level file can also be given as generated:<height>x<width>:<seed>, to use a generated level)
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+public class Simulation {
+
+	private final static int DEFAULT_MAX_TURNS = 10000;
+	private final static String PLAYER_NAME = "Simulated";
+	private final static String GENERATED_LEVEL = "generated:";
+	//Monster pathfinding radius (as for GameEngine, set with -Drogue.pathfinding.radius):
+	private final static int PATHFINDING_RADIUS = Integer.getInteger("rogue.pathfinding.radius", 0);
+
+	private Level level;
+	private int maxTurns;
+
+	/*
+	 *  Constructor
+	 */
+	public Simulation(Level level, int maxTurns) {
+		this.level = level;
+		this.maxTurns = maxTurns;
+	}
+
+	/*
+	 *  Play one game of the level, with a new player, and add its statistics to stats
+	 */
+	public World.Outcome play(MoveSource moves, SimulationStats stats) {
+
+		Player player = new Player(PLAYER_NAME);
+		World world = level.createWorld(player);
+		world.setHeadless(true);
+		world.setMaxTurns(maxTurns);
+		world.setPathfinding(PATHFINDING_RADIUS);
+
+		World.Outcome outcome = world.runWorld(moves);
+		stats.record(world, outcome);
+		return outcome;
+
+	}
+
+	/*
+	 *  Create the move source for one game
+	 *  Policies: "random" (random moves), "seek" (head for the warp stone) or "script=<file>"
+	 */
+	public static MoveSource createMoveSource(String policy, long seed) throws IOException {
+
+		if (policy.startsWith("script=")) {
+			return ScriptMoveSource.fromFile(policy.substring("script=".length()));
+		}
+
+		switch (policy) {
+			case "random":
+				return new RandomMoveSource(seed);
+			case "seek":
+				return new WarpSeekerMoveSource(seed);
+			default:
+				throw new IllegalArgumentException("Unknown move policy '" + policy + "'.");
+		}
+
+	}
+
+	/*
+	 *  Load the level to simulate: a level file, or "generated:<height>x<width>:<seed>"
+	 *  	for a level made by the LevelGenerator (so no level file is needed)
+	 */
+	public static Level loadLevel(String name) throws GameLevelNotFoundException {
+
+		if (name.startsWith(GENERATED_LEVEL)) {
+			String[] spec = name.substring(GENERATED_LEVEL.length()).split("[x:]");
+			if (spec.length != 3) {
+				throw new IllegalArgumentException("Generated levels are given as "
+						+ GENERATED_LEVEL + "<height>x<width>:<seed>.");
+			}
+			return new LevelGenerator(Long.parseLong(spec[2]))
+					.generate(Integer.parseInt(spec[0]), Integer.parseInt(spec[1]), ForkJoinPool.commonPool());
+		}
+		return new LevelCache(1).getLevel(name);
+
+	}
+
+	public static void main(String[] args) {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java Simulation <level file | generated:<height>x<width>:<seed>> <games> "
+					+ "[random | seek | script=<file>] [seed] [max turns]");
+			return;
+		}
+
+		try {
+
+			String filename = args[0];
+			int games = Integer.parseInt(args[1]);
+			String policy = (args.length > 2) ? args[2] : "seek";
+			long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1;
+			int maxTurns = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_MAX_TURNS;
+
+			Level level = loadLevel(filename);
+			Simulation simulation = new Simulation(level, maxTurns);
+			SimulationStats stats = new SimulationStats();
+
+			//Check the policy now (and load the script only once, rather than once per game):
+			MoveSource moves = createMoveSource(policy, seed);
+			ScriptMoveSource script = (moves instanceof ScriptMoveSource) ? (ScriptMoveSource) moves : null;
+
+			long start = System.nanoTime();
+			for (int game = 0; game < games; game++) {
+				moves = (script != null) ? script.copy() : createMoveSource(policy, seed + game);
+				simulation.play(moves, stats);
+			}
+			long elapsed = System.nanoTime() - start;
+
+			stats.print(System.out);
+			System.out.println(String.format("Elapsed: %.1f ms (%.0f games/s)",
+					elapsed / 1e6, games / (elapsed / 1e9)));
+
+		} catch (GameLevelNotFoundException e) {
+			System.out.println(e.getMessage());
+		} catch (Exception e) {
+			System.out.println("The following error occured while running the simulation:");
+			System.out.println(e.getMessage());
+		}
+
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Class for SimulationStats objects
+ * Collects outcome statistics over a number of headless runs of the world loop.
+ * @author: Damian Curran
+ *
+ */
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.TreeMap;
+
+public class SimulationStats {
+
+	private long games;
+	private EnumMap<World.Outcome, Long> outcomes;
+	private long totalTurns;
+	private long turnsToWarpStone;	//Total turns, over the games won by reaching the warp stone
+	private long totalDamageTaken;
+	private long monstersDefeated;
+	private long itemsCollected;
+	private TreeMap<String, Long> damageTakenByMonster;
+
+	/*
+	 *  Constructor
+	 */
+	public SimulationStats() {
+		this.outcomes = new EnumMap<World.Outcome, Long>(World.Outcome.class);
+		this.damageTakenByMonster = new TreeMap<String, Long>();
+	}
+
+	/*
+	 *  Add the statistics of one finished run of the world loop
+	 */
+	public void record(World world, World.Outcome outcome) {
+
+		games++;
+		increment(outcomes, outcome, 1);
+		totalTurns += world.getTurns();
+		if (outcome == World.Outcome.WARP_STONE) turnsToWarpStone += world.getTurns();
+		totalDamageTaken += world.getDamageTaken();
+		monstersDefeated += world.getMonstersDefeated();
+		itemsCollected += world.getItemsCollected();
+		for (java.util.Map.Entry<String, Integer> e : world.getDamageTakenByMonster().entrySet()) {
+			increment(damageTakenByMonster, e.getKey(), e.getValue());
+		}
+
+	}
+
+	/*
+	 *  Add all statistics collected by another SimulationStats object
+	 */
+	public void merge(SimulationStats other) {
+
+		games += other.games;
+		for (java.util.Map.Entry<World.Outcome, Long> e : other.outcomes.entrySet()) {
+			increment(outcomes, e.getKey(), e.getValue());
+		}
+		totalTurns += other.totalTurns;
+		turnsToWarpStone += other.turnsToWarpStone;
+		totalDamageTaken += other.totalDamageTaken;
+		monstersDefeated += other.monstersDefeated;
+		itemsCollected += other.itemsCollected;
+		for (java.util.Map.Entry<String, Long> e : other.damageTakenByMonster.entrySet()) {
+			increment(damageTakenByMonster, e.getKey(), e.getValue());
+		}
+
+	}
+
+	/*
+	 *  Print a summary of the statistics
+	 */
+	public void print(PrintStream out) {
+
+		out.println("Games: " + games);
+		for (World.Outcome outcome : World.Outcome.values()) {
+			out.println("  " + outcome + ": " + getOutcomeCount(outcome));
+		}
+		out.println(String.format("Win rate: %.1f%%", 100.0 * getWinRate()));
+		out.println(String.format("Average turns: %.1f", average(totalTurns, games)));
+		out.println(String.format("Average turns to warp stone: %.1f",
+				average(turnsToWarpStone, getOutcomeCount(World.Outcome.WARP_STONE))));
+		out.println(String.format("Average damage taken: %.1f", average(totalDamageTaken, games)));
+		out.println(String.format("Average monsters defeated: %.2f", average(monstersDefeated, games)));
+		out.println(String.format("Average items collected: %.2f", average(itemsCollected, games)));
+		out.println("Damage taken per monster type (average per game):");
+		for (java.util.Map.Entry<String, Long> e : damageTakenByMonster.entrySet()) {
+			out.println(String.format("  %s: %.2f", e.getKey(), average(e.getValue(), games)));
+		}
+
+	}
+
+	/*
+	 *  Getter methods:
+	 */
+	public long getGames() {
+		return games;
+	}
+
+	public long getOutcomeCount(World.Outcome outcome) {
+		Long count = outcomes.get(outcome);
+		return (count == null) ? 0 : count;
+	}
+
+	public double getWinRate() {
+		return average(getOutcomeCount(World.Outcome.WARP_STONE), games);
+	}
+
+	public long getTotalDamageTaken() {
+		return totalDamageTaken;
+	}
+
+	/*
+	 *  Helper methods:
+	 */
+	private static <K> void increment(java.util.Map<K, Long> counts, K key, long amount) {
+		Long count = counts.get(key);
+		counts.put(key, (count == null) ? amount : count + amount);
+	}
+
+	private static double average(long total, long count) {
+		return (count == 0) ? 0 : (double) total / count;
+	}
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Class for SpatialIndex objects
+ * Keeps entities bucketed by their (x,y) position, so entities at a given grid
+ * 	can be found without scanning every entity in the world.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class SpatialIndex<T extends Entity> {
+
+	private HashMap<Long, ArrayList<T>> cells;
+
+	/*
+	 *  Constructor
+	 */
+	public SpatialIndex() {
+		this.cells = new HashMap<Long, ArrayList<T>>();
+	}
+
+	/*
+	 *  Add entity to the index at its current position
+	 */
+	public void add(T e) {
+
+		Long key = keyOf(e.getPosX(), e.getPosY());
+		ArrayList<T> bucket = cells.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<T>(1);
+			cells.put(key, bucket);
+		}
+		bucket.add(e);
+
+	}
+
+	/*
+	 *  Remove entity from the index (entity must still be at its indexed position)
+	 */
+	public void remove(T e) {
+
+		Long key = keyOf(e.getPosX(), e.getPosY());
+		ArrayList<T> bucket = cells.get(key);
+		if (bucket == null) return;
+		bucket.remove(e);
+		if (bucket.isEmpty()) cells.remove(key);
+
+	}
+
+	/*
+	 *  Remove every entity at (x,y) which matches the filter, in one pass over the grid's bucket
+	 *  Returns true if any entity was removed.
+	 */
+	public boolean removeAllAt(int x, int y, Predicate<? super T> filter) {
+
+		Long key = keyOf(x, y);
+		ArrayList<T> bucket = cells.get(key);
+		if (bucket == null || !bucket.removeIf(filter)) return false;
+		if (bucket.isEmpty()) cells.remove(key);
+		return true;
+
+	}
+
+	/*
+	 *  Move entity to (x,y), updating both the entity position and the index
+	 *  All position changes of indexed entities must go through this method.
+	 */
+	public void move(T e, int x, int y) {
+		remove(e);
+		e.setPosition(x, y);
+		add(e);
+	}
+
+	/*
+	 *  Returns the first entity at (x,y), or null if there is none
+	 */
+	public T getFirstAt(int x, int y) {
+		ArrayList<T> bucket = cells.get(keyOf(x, y));
+		return (bucket == null) ? null : bucket.get(0);
+	}
+
+	/*
+	 *  Returns all entities at (x,y) (read-only; empty if there are none)
+	 */
+	public List<T> getAllAt(int x, int y) {
+		ArrayList<T> bucket = cells.get(keyOf(x, y));
+		if (bucket == null) return Collections.emptyList();
+		return Collections.unmodifiableList(bucket);
+	}
+
+	/*
+	 *  Helper method to pack (x,y) into a single key
+	 */
+	private static Long keyOf(int x, int y) {
+		return ((long) y << 32) | (x & 0xFFFFFFFFL);
+	}
+
+}
@@ -6,13 +6,30 @@
 
 public class Terrain implements Renderable {
 	
-	private char symbol;
-	private boolean traversable;
+	private final char symbol;
+	private final boolean traversable;
 	
-	private final static char DEFAULT_SYMBOL = '.';
+	final static char DEFAULT_SYMBOL = '.';
 	private final static boolean DEFAULT_TRAVERSABLE = true;
 	private final static char[] NON_TRAVERSABLE_TILES = {'#' , '~'};
 	
+	//Shared (flyweight) Terrain instances, one per single-byte symbol and traversable flag.
+	//Terrain objects are immutable, so the same instance is handed out for every map cell.
+	private final static int FLYWEIGHT_RANGE = 256;
+	private final static Terrain[] TRAVERSABLE_FLYWEIGHTS = new Terrain[FLYWEIGHT_RANGE];
+	private final static Terrain[] BLOCKED_FLYWEIGHTS = new Terrain[FLYWEIGHT_RANGE];
+	
+	//Lookup table of traversability for every single-byte symbol (built from NON_TRAVERSABLE_TILES):
+	private final static boolean[] TRAVERSABLE_SYMBOLS = new boolean[FLYWEIGHT_RANGE];
+	static {
+		for (int c = 0; c < FLYWEIGHT_RANGE; c++) {
+			TRAVERSABLE_SYMBOLS[c] = true;
+		}
+		for (char ntt: NON_TRAVERSABLE_TILES) {
+			TRAVERSABLE_SYMBOLS[ntt] = false;
+		}
+	}
+	
 	/*
 	 *  Constructor (default)
 	 */
@@ -34,33 +51,44 @@ public class Terrain implements Renderable {
 	 *  Constructor (overloaded)
 	 */
 	public Terrain(char c) {
-		this.symbol = c;
-		this.traversable = true;
-		for (char ntt: NON_TRAVERSABLE_TILES) {
-			if (c == ntt) this.traversable = false;
-		}
+		this(c, isTraversable(c));
 		
 	}
 
 	/*
-	 *  Method to set symbol
+	 *  Returns the shared Terrain instance for symbol c (traversability derived from the symbol)
 	 */
-	public void set(char c) {
-		this.symbol = c;	
-		this.traversable = true;	
-		for (char ntt: NON_TRAVERSABLE_TILES) {
-			if (c == ntt) this.traversable = false;
+	public static Terrain valueOf(char c) {
+		return valueOf(c, isTraversable(c));
+	}
+	
+	/*
+	 *  Returns the shared Terrain instance for symbol c with traversability b (overloaded)
+	 *  Symbols outside the single-byte range are not cached and get a new instance.
+	 */
+	public static Terrain valueOf(char c, boolean b) {
+		
+		if (c >= FLYWEIGHT_RANGE) return new Terrain(c, b);
+		
+		Terrain[] flyweights = b ? TRAVERSABLE_FLYWEIGHTS : BLOCKED_FLYWEIGHTS;
+		Terrain t = flyweights[c];
+		if (t == null) {
+			t = new Terrain(c, b);
+			flyweights[c] = t;
 		}
+		return t;
 		
 	}
 	
 	/*
-	 *  Method to set symbol (overloaded)
+	 *  Check if the terrain symbol c can be walked on (ie. is not a listed NON_TRAVERSABLE_TILE)
 	 */
-	public void set(char c, boolean b) {
-		this.symbol = c;
-		this.traversable = b;
-		
+	public static boolean isTraversable(char c) {
+		if (c < FLYWEIGHT_RANGE) return TRAVERSABLE_SYMBOLS[c];
+		for (char ntt: NON_TRAVERSABLE_TILES) {
+			if (c == ntt) return false;
+		}
+		return true;
 	}
 	
 	/*
@@ -71,6 +99,14 @@ public class Terrain implements Renderable {
 		
 	}
 	
+	/*
+	 *  Renderable Interface method: writes the symbol into the frame buffer at 'index'
+	 */
+	public void render(char[] frame, int index) {
+		frame[index] = symbol;
+		
+	}
+	
 	/*
 	 *  Getter methods
 	 */
@@ -0,0 +1,59 @@
+/**
+ * Class for TickMoveSource objects
+ * Runs the world loop in real time: one turn per tick, at a fixed rate, whether or not a key
+ * 	has been pressed. Each tick takes the next move queued by the KeyboardInput
+ * 	(or an empty move if there is none, so the monsters still move).
+ * Ticks are kept to a fixed rate (the time taken by each turn comes out of the tick),
+ * 	but after a stall of more than a tick, ticks restart from the end of the stall
+ * 	instead of running several turns at once to catch up.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+public class TickMoveSource implements MoveSource {
+
+	private final static String NO_MOVE = "";
+
+	private KeyboardInput input;
+	private long tickNanos;
+	private long nextTick;		//Time (System.nanoTime) of the next tick, or 0 before the first tick
+
+	/*
+	 *  Constructor
+	 */
+	public TickMoveSource(KeyboardInput input, long tickMillis) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("Tick length must be positive.");
+		}
+		this.input = input;
+		this.tickNanos = tickMillis * 1000000;
+		this.nextTick = 0;
+	}
+
+	/*
+	 *  MoveSource Interface method:
+	 *  Waits for the next tick, then returns the next move typed (or an empty move if none),
+	 *  	or null once the keyboard input has ended.
+	 */
+	public String nextMove(World world) {
+
+		long now = System.nanoTime();
+		if (nextTick == 0) nextTick = now + tickNanos;
+
+		while (now < nextTick) {
+			LockSupport.parkNanos(nextTick - now);
+			now = System.nanoTime();
+		}
+
+		nextTick += tickNanos;
+		if (now - nextTick > tickNanos) nextTick = now + tickNanos;
+
+		String move = input.pollMove();
+		if (move != null) return move;
+		return input.isOpen() ? NO_MOVE : null;
+
+	}
+
+}
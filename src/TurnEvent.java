@@ -0,0 +1,48 @@
+/**
+ * Class for TurnEvent objects
+ * Java Flight Recorder event for one turn of World.runWorld: from the move being read
+ * 	to the end of the turn (so the time waiting for input is not included).
+ * Disabled by default: enable the "rogue.Turn" event in the recording's settings to record it.
+ * 	When it is not being recorded, the event is never committed, and costs nothing
+ * 	once the JIT compiler has removed it.
+ * 	(Events are not created at all until the flight recorder has been started, as loading
+ * 	an event class starts up part of the flight recorder, which takes a noticeable time.)
+ * @author: Damian Curran
+ *
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("rogue.Turn")
+@Label("Turn")
+@Category("Rogue")
+@Description("One turn of the world loop, with the entities in the world at the end of the turn")
+@Enabled(false)
+public class TurnEvent extends Event {
+
+	@Label("Turn")
+	int turn;
+
+	@Label("Move")
+	String move;
+
+	@Label("Monsters")
+	int monsters;
+
+	@Label("Active Monsters")
+	@Description("Monsters near the player (the only monsters checked each turn)")
+	int activeMonsters;
+
+	@Label("Items")
+	int items;
+
+	@Label("Outcome")
+	@Description("How the run ended on this turn (empty if the run continues)")
+	String outcome;
+
+}
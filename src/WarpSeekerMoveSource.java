@@ -0,0 +1,83 @@
+/**
+ * Class for WarpSeekerMoveSource objects
+ * A simple AI policy: heads for the warp stone (or, if there is none, the nearest item),
+ * 	stepping along whichever axis is open, and making a random move when blocked.
+ * @author: Damian Curran
+ *
+ */
+
+import java.util.Random;
+
+public class WarpSeekerMoveSource implements MoveSource {
+
+	private final static char WARP_STONE = '@';
+	private final static String[] MOVES = {"w", "a", "s", "d"};
+
+	private Random random;
+
+	/*
+	 *  Constructor
+	 */
+	public WarpSeekerMoveSource(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/*
+	 *  MoveSource Interface method:
+	 */
+	public String nextMove(World world) {
+
+		Player player = world.getPlayer();
+		Item target = findTarget(world, player);
+		if (target == null) return MOVES[random.nextInt(MOVES.length)];
+
+		Map map = world.getMap();
+		int x = player.getPosX();
+		int y = player.getPosY();
+		int dx = Integer.signum(target.getPosX() - x);
+		int dy = Integer.signum(target.getPosY() - y);
+
+		//Try the horizontal and vertical steps towards the target (in random order), if open:
+		boolean horizontalFirst = random.nextBoolean();
+		for (int attempt = 0; attempt < 2; attempt++) {
+			if (horizontalFirst == (attempt == 0)) {
+				if (dx != 0 && isOpen(map, y, x + dx)) return (dx < 0) ? "a" : "d";
+			} else {
+				if (dy != 0 && isOpen(map, y + dy, x)) return (dy < 0) ? "w" : "s";
+			}
+		}
+
+		//Blocked: make a random move to get around the obstacle
+		return MOVES[random.nextInt(MOVES.length)];
+
+	}
+
+	/*
+	 *  Helper method to find the warp stone, or else the nearest item (null if there are no items)
+	 */
+	private Item findTarget(World world, Player player) {
+
+		Item nearest = null;
+		int nearestDistance = Integer.MAX_VALUE;
+
+		for (Item i : world.getItems()) {
+			if (i.getSymbol() == WARP_STONE) return i;
+			int distance = Math.abs(i.getPosX() - player.getPosX()) + Math.abs(i.getPosY() - player.getPosY());
+			if (distance < nearestDistance) {
+				nearest = i;
+				nearestDistance = distance;
+			}
+		}
+
+		return nearest;
+
+	}
+
+	/*
+	 *  Helper method to check if (y,x) is on the map and traversable
+	 */
+	private boolean isOpen(Map map, int y, int x) {
+		return y >= 0 && y < map.getHeight() && x >= 0 && x < map.getWidth() && map.isTraversable(y, x);
+	}
+
+}
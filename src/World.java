@@ -4,170 +4,630 @@
  *
  */
 
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
+import jdk.jfr.FlightRecorder;
 
 public class World {
+	
+	/*
+	 *  Ways a run of the world loop can end (returned by runWorld)
+	 */
+	public enum Outcome {
+		WARP_STONE,		//Player collected the warp stone
+		DEFEATED,		//Player lost a battle
+		CLEARED,		//No monsters or items remain (eg. default map)
+		RETURNED_HOME,	//Player typed 'home'
+		ABANDONED		//Move source ran out of moves, or the turn limit was reached
+	}
 
 	private Map map;
 	private Player player;
-	private ArrayList<Monster> monsters;
-	private ArrayList<Item> items;
+	//Monsters and items (removed as soon as they are defeated or collected)
+	//	The monsters' data is held in parallel arrays in the monster store (see MonsterStore):
+	private MonsterStore monsters;
+	private EntityStore<Item> items;
+	
+	//Spatial indexes of monsters and items, used for all lookups by (x,y) position:
+	private SpatialIndex<Monster> monsterIndex;
+	private SpatialIndex<Item> itemIndex;
+	
+	//Monsters near the player (the only ones which can move), and dormant monsters by region:
+	private ActiveRegions<Monster> activeMonsters;
+	
+	//Reusable buffer the map is rendered into each frame, of frameHeight x frameWidth cells
+	//	(created on the first render, so headless worlds never allocate one):
+	private FrameBuffer frameBuffer;
+	private int frameHeight;
+	private int frameWidth;
+	private boolean incremental;	//True if only the changed cells are redrawn (see setIncrementalRendering)
+	
+	//Viewport (camera) position: map coordinates of the top-left cell of the frame buffer.
+	//By default the frame buffer covers the whole map, and the origin stays at (0,0).
+	private int viewOriginY;
+	private int viewOriginX;
+	
+	//Output for the map and messages (System.out unless set otherwise).
+	//In headless mode nothing is rendered or printed.
+	private PrintStream console;
+	private PrintStream out;
+	private boolean headless;
+	private boolean lineInput;	//True if moves are typed as lines, after a prompt
+	private int maxTurns;	//Turn limit (0 = no limit)
+	
+	//Distance field from the player, shared by all monsters in pathfinding mode (null = greedy movement):
+	private FlowField flowField;
 	
-	private ArrayList<Monster> monstersToDelete;
-	private ArrayList<Item> itemsToDelete;
+	//Time spent in each phase of a turn (shared by all worlds, see Metrics)
+	//	In headless mode, where turns take well under a microsecond, only one turn in
+	//	HEADLESS_TIMING_INTERVAL is timed, so reading the clock does not slow the simulation down:
+	private final static int HEADLESS_TIMING_INTERVAL = 16;
+	private final static LatencyHistogram INPUT_TIME = Metrics.histogram("turn.input");
+	private final static LatencyHistogram MOVE_MONSTERS_TIME = Metrics.histogram("turn.moveMonsters");
+	private final static LatencyHistogram MOVE_PLAYER_TIME = Metrics.histogram("turn.movePlayer");
+	private final static LatencyHistogram CLASH_TIME = Metrics.histogram("turn.checkClashAndBattle");
+	private final static LatencyHistogram ITEMS_TIME = Metrics.histogram("turn.checkItemsAndCollect");
+	private final static LatencyHistogram ENTITIES_TIME = Metrics.histogram("turn.checkIfEntitiesRemaining");
+	private final static LatencyHistogram RENDER_TIME = Metrics.histogram("turn.renderWorld");
+	private final static Metrics.Counter BATTLES = Metrics.counter("world.battles");
+	
+	//Statistics for the current run of the world loop:
+	private int turns;
+	private int damageTaken;
+	private int monstersDefeated;
+	private int itemsCollected;
+	private HashMap<String, Integer> damageTakenByMonster;
+	
+	//Wait for the next move (see promptForMove): whether this turn is timed, and when the wait started
+	private boolean timed;
+	private long inputStart;
+	
+	//Monsters move towards the player when within this distance (in both directions) of the player:
+	private final static int CHASE_DISTANCE = 2;
+	
+	//Most moves in one batch of moves (eg. "5d"), so a mistyped count cannot run the game on by itself:
+	private final static int MAX_BATCH_MOVES = 1000;
+	
+	//Largest frame (in each direction) rendered by default:
+	private final static int MAX_FRAME_SIZE = 1024;
+	
+	private final static OutputStream DISCARD = new OutputStream() {
+		public void write(int b) {
+			//Discard all output
+		}
+		public void write(byte[] b, int off, int len) {
+			//Discard all output
+		}
+	};
 	
 	/*
 	 *  Constructor
 	 */
 	public World(Player p, int height, int width) {
+		this(p, new GridMap(height, width));
+		
+	}
+	
+	/*
+	 *  Constructor (overloaded)
+	 *  Used to create a world on an existing map (eg. loaded from a level file)
+	 */
+	public World(Player p, Map map) {
+		
+		int height = map.getHeight();
+		int width = map.getWidth();
 		
-		this.map = new Map(height, width);
+		this.map = map;
 		this.player = p;
-		this.monsters = new ArrayList<Monster>();
-		this.items = new ArrayList<Item>();
-		this.monstersToDelete = new ArrayList<Monster>();
-		this.itemsToDelete = new ArrayList<Item>();
+		this.monsters = new MonsterStore();
+		this.items = new EntityStore<Item>();
+		this.monsterIndex = new SpatialIndex<Monster>();
+		this.itemIndex = new SpatialIndex<Item>();
+		this.activeMonsters = new ActiveRegions<Monster>(monsters);
+		//(Maps larger than the largest frame are shown through a viewport, centred on the player.)
+		this.frameHeight = Math.min(height, MAX_FRAME_SIZE);
+		this.frameWidth = Math.min(width, MAX_FRAME_SIZE);
+		this.console = System.out;
+		this.out = console;
+		this.headless = false;
+		this.lineInput = true;
+		this.maxTurns = 0;
+		this.damageTakenByMonster = new HashMap<String, Integer>();
 		
 	}
 	
 	/*
-	 *  Logic for running the main world loop
+	 *  Logic for running the main world loop, with moves typed on the keyboard
 	 */
 	public void runWorld(Scanner keyboard) {
+		runWorld(world -> keyboard.nextLine());
+		
+	}
+	
+	/*
+	 *  Logic for running the main world loop (overloaded)
+	 *  Moves are taken from the move source (eg. keyboard, script or AI policy)
+	 *  Returns how the run ended; statistics for the run are available from the getter methods.
+	 */
+	public Outcome runWorld(MoveSource moves) {
+		
+		beginRun();
+		
+		Outcome outcome = null;
+		while (outcome == null) {
+			String userMove = moves.nextMove(this);
+			
+			//Stop if the move source has run out of moves:
+			outcome = (userMove == null) ? Outcome.ABANDONED : playMove(userMove);
+		}
+		
+		return outcome;
+		
+	}
+	
+	/*
+	 *  Start a run of the world loop, to be played a move at a time with playMove()
+	 *  	(eg. by a GameServer session, as each line of input arrives)
+	 *  Renders the world, and prompts for the first move.
+	 */
+	public void beginRun() {
+		
+		turns = 0;
+		damageTaken = 0;
+		monstersDefeated = 0;
+		itemsCollected = 0;
+		damageTakenByMonster.clear();
 		
 		renderWorld();
+		promptForMove();
+		
+	}
+	
+	/*
+	 *  Play one move of the world loop started with beginRun(), render the world, and prompt for the next move
+	 *  Returns how the run ended on this move, or null if it continues.
+	 */
+	public Outcome playMove(String userMove) {
 		
-		boolean inMap = true;	
+		long time = Metrics.lap(INPUT_TIME, inputStart);
 		
-		while (inMap) {
+		//A batch of moves (eg. "wwwwddd" or "5d") is played as one turn per move, but the world
+		//	is only rendered once: after the last move, or as soon as a battle or pickup interrupts it.
+		int batchLength = getBatchLength(userMove);
+		for (int step = 0; step < Math.max(1, batchLength); step++) {
 			
-			System.out.print("> ");
-			String userMove = keyboard.nextLine();
+			//Stop if the turn limit is reached:
+			if (maxTurns > 0 && turns >= maxTurns) return Outcome.ABANDONED;
 			
-			moveMonsters();
+			String move = (batchLength == 0) ? userMove : getBatchMove(userMove, step);
+			int defeated = monstersDefeated;
+			int collected = itemsCollected;
 			
-			switch (userMove) {
+			Outcome outcome = playTurn(move, time);
+			if (outcome != null) return outcome;
+			if (monstersDefeated != defeated || itemsCollected != collected) break;
+			time = timed ? Metrics.start() : 0;
 			
-				case "home":
+		}
+		
+		//Render updated world at end of each loop:
+		time = timed ? Metrics.start() : 0;
+		renderWorld();
+		Metrics.lap(RENDER_TIME, time);
+		
+		promptForMove();
+		return null;
+		
+	}
+	
+	/*
+	 *  Helper method to prompt for the next move, and start timing the wait for it
+	 */
+	private void promptForMove() {
+		
+		if (!headless && lineInput) out.print("> ");
+		timed = !headless || turns % HEADLESS_TIMING_INTERVAL == 0;
+		inputStart = timed ? Metrics.start() : 0;
+		
+	}
+	
+	/*
+	 *  Helper method to play one turn of the world loop with the given move (not including rendering)
+	 *  	'time' is when the turn started, for the metrics (0 if the turn is not timed)
+	 *  Returns how the run ended on this turn, or null if it continues.
+	 */
+	private Outcome playTurn(String userMove, long time) {
+		
+		turns++;
+		
+		//(Flight recorder events are only created once the flight recorder has been started,
+		//	as loading the event classes alone takes a noticeable time, see TurnEvent)
+		TurnEvent turnEvent = null;
+		if (FlightRecorder.isInitialized()) {
+			turnEvent = new TurnEvent();
+			turnEvent.begin();
+		}
+		
+		moveMonsters();
+		time = Metrics.lap(MOVE_MONSTERS_TIME, time);
+		
+		switch (userMove) {
+		
+			case "home":
 
-					displayHomeMapMsg();
-					return;
-			
-				case "w":
-					
-					movePlayerNorth();
-					break;
-					
-				case "s":
-					
-					movePlayerSouth();
-					break;
-					
-				case "a":
-					
-					movePlayerWest();
-					break;
-					
-				case "d":
-					
-					movePlayerEast();
-					break;
-									
-				default:
-					
-					break;
-					
+				displayHomeMapMsg();
+				return endTurn(turnEvent, userMove, Outcome.RETURNED_HOME);
+		
+			case "w":
+				
+				movePlayerNorth();
+				break;
+				
+			case "s":
+				
+				movePlayerSouth();
+				break;
+				
+			case "a":
+				
+				movePlayerWest();
+				break;
+				
+			case "d":
+				
+				movePlayerEast();
+				break;
+								
+			default:
+				
+				break;
+				
+		}
+		time = Metrics.lap(MOVE_PLAYER_TIME, time);
+		
+		//Check if any entities in same grid - if so, battle:
+		//If player loses any battle, the called method returns true, 
+		//	which then exits runWorld() and returns to the calling method in GameEngine.
+		boolean lost = checkClashAndBattle();
+		time = Metrics.lap(CLASH_TIME, time);
+		if(lost) return endTurn(turnEvent, userMove, Outcome.DEFEATED);
+		
+		//Check if any player is on same grid as any item:
+		//If player reaches the warp stone, the called method returns true, 
+		//	which then exits runWorld() and returns to the calling method in GameEngine.
+		boolean warped = checkItemsAndCollect();
+		time = Metrics.lap(ITEMS_TIME, time);
+		if(warped) return endTurn(turnEvent, userMove, Outcome.WARP_STONE);
+		
+		//Check if any entities (monsters or items) remain in the world:
+		//If there are no other entities, the called method returns true, 
+		//	which then exits runWorld() and returns to the calling method in GameEngine.
+		//(Used to exit world where default map (with no warp stone) is being used)
+		boolean cleared = checkIfEntitiesRemaining();
+		Metrics.lap(ENTITIES_TIME, time);
+		if(cleared) return endTurn(turnEvent, userMove, Outcome.CLEARED);
+		
+		return endTurn(turnEvent, userMove, null);
+		
+	}
+	
+	/*
+	 *  Helper method to return the number of moves in a batch of moves, or 0 if the input is not a batch
+	 *  A batch is either a string of two or more moves (eg. "wwwwddd"),
+	 *  	or a count followed by one move (eg. "5d", for "ddddd"), with a count of 1 to MAX_BATCH_MOVES.
+	 */
+	static int getBatchLength(String input) {
+		
+		int length = input.length();
+		if (length < 2 || !isMoveKey(input.charAt(length - 1))) return 0;
+		
+		if (isMoveKey(input.charAt(0))) {
+			for (int i = 1; i < length - 1; i++) {
+				if (!isMoveKey(input.charAt(i))) return 0;
 			}
-			
-			//Check if any entities in same grid - if so, battle:
-			//If player loses any battle, the called method returns true, 
-			//	which then exits runWorld() and returns to the calling method in GameEngine.
-			if(checkClashAndBattle()) return;
-			
-			//Check if any player is on same grid as any item:
-			//If player reaches the warp stone, the called method returns true, 
-			//	which then exits runWorld() and returns to the calling method in GameEngine.
-			if(checkItemsAndCollect()) return;
-			
-			//Check if any entities (monsters or items) remain in the world:
-			//If there are no other entities, the called method returns true, 
-			//	which then exits runWorld() and returns to the calling method in GameEngine.
-			//(Used to exit world where default map (with no warp stone) is being used)
-			if(checkIfEntitiesRemaining()) return;
-			
-			//Render updated world at end of each loop:
-			renderWorld();
-					
+			return length;
+		}
+		
+		int count = 0;
+		for (int i = 0; i < length - 1; i++) {
+			char c = input.charAt(i);
+			if (c < '0' || c > '9') return 0;
+			count = count * 10 + (c - '0');
+			if (count > MAX_BATCH_MOVES) return 0;
+		}
+		return count;
+		
+	}
+	
+	/*
+	 *  Helper method to return move number 'step' of a batch of moves (see getBatchLength)
+	 */
+	static String getBatchMove(String input, int step) {
+		
+		char key = isMoveKey(input.charAt(0)) ? input.charAt(step) : input.charAt(input.length() - 1);
+		switch (key) {
+			case 'w':
+				return "w";
+			case 'a':
+				return "a";
+			case 's':
+				return "s";
+			default:
+				return "d";
+		}
+		
+	}
+	
+	/*
+	 *  Helper method to return true if c is a move key (w, a, s or d)
+	 */
+	private static boolean isMoveKey(char c) {
+		return c == 'w' || c == 'a' || c == 's' || c == 'd';
+	}
+	
+	/*
+	 *  Helper method to end the turn's flight recorder event, if any (committed only if it is being recorded)
+	 *  	outcome is how the run ended on this turn, or null if it continues. Returns outcome.
+	 */
+	private Outcome endTurn(TurnEvent event, String move, Outcome outcome) {
+		
+		if (event != null && event.shouldCommit()) {
+			event.turn = turns;
+			event.move = move;
+			event.monsters = monsters.size();
+			event.activeMonsters = monsters.getActiveCount();
+			event.items = items.size();
+			event.outcome = (outcome == null) ? "" : outcome.name();
+			event.commit();
 		}
+		return outcome;
 		
 	}
 	
 	/*
-	 *  Add monster to <monster> ArrayList
+	 *  Add monster to the monster store
 	 *  Used to add default Monster already initialised in GameEngine
 	 */
 	public void addMonster(Monster m) {
 		monsters.add(m);
+		monsterIndex.add(m);
+		activeMonsters.add(m);
 		
 	}	
 	
 	/*
-	 *  Add monster to <monster> ArrayList (overloaded)
+	 *  Add monster to the monster store (overloaded)
 	 *  Used to add bespoke monster loaded from map file
 	 */
 	public void addMonster(int posX, int posY, String name, int maxHealth, int attackDamage) {
-		monsters.add(new Monster (name, maxHealth, attackDamage, posX, posY));
+		addMonster(new Monster (name, maxHealth, attackDamage, posX, posY));
 		
 	}
 
 	/*
-	 *  Add item to <item> ArrayList
+	 *  Add item to the item store
 	 *  Used to add bespoke item loaded from map file
 	 */
 	public void addItem(int posX, int posY, char c) {
-		items.add(new Item (posY, posX, c));
+		Item i = new Item (posY, posX, c);
+		items.add(i);
+		itemIndex.add(i);
 		
 	}
 
+	/*
+	 *  Turn incremental rendering on or off
+	 *  When on, only the map cells which changed are redrawn each turn (using ANSI cursor movement),
+	 *  	instead of printing the whole map again. Requires an ANSI-capable terminal.
+	 */
+	public void setIncrementalRendering(boolean incremental) {
+		this.incremental = incremental;
+		if (frameBuffer != null) frameBuffer.setIncremental(incremental);
+		
+	}
+	
+	/*
+	 *  Set whether moves are typed as lines, after a prompt (true, the default),
+	 *  	or as single keys without echo or a prompt (false, eg. in real-time mode)
+	 */
+	public void setLineInput(boolean lineInput) {
+		this.lineInput = lineInput;
+		if (frameBuffer != null) frameBuffer.setLineInput(lineInput);
+		
+	}
+	
+	/*
+	 *  Limit rendering to a viewport of the given size, centred on the player
+	 *  Only the tiles inside the viewport are resolved and rendered each turn,
+	 *  	so large maps cost no more to render than small ones.
+	 *  A viewport larger than the map (in either direction) is reduced to the map size.
+	 */
+	public void setViewport(int height, int width) {
+		
+		//(The frame buffer is created at the new size on the next render)
+		frameHeight = Math.min(height, map.getHeight());
+		frameWidth = Math.min(width, map.getWidth());
+		frameBuffer = null;
+		viewOriginY = 0;
+		viewOriginX = 0;
+		
+	}
+	
+	/*
+	 *  Turn headless mode on or off
+	 *  In headless mode the world is not rendered and no messages are printed,
+	 *  	so the world loop runs at CPU speed (used for simulations).
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+		//(Each headless world has its own discarding stream, so worlds running on
+		//	different threads never contend for the same stream.)
+		this.out = headless ? new PrintStream(DISCARD) : console;
+		
+	}
+	
+	/*
+	 *  Set the stream the world is rendered and its messages printed to (System.out by default)
+	 *  Used to give each world its own output (eg. one per game session)
+	 */
+	public void setOutput(PrintStream output) {
+		this.console = output;
+		if (!headless) this.out = output;
+		
+	}
+	
+	/*
+	 *  Set the maximum number of turns in a run of the world loop (0 = no limit)
+	 */
+	public void setMaxTurns(int maxTurns) {
+		this.maxTurns = maxTurns;
+		
+	}
+	
+	/*
+	 *  Turn monster pathfinding on (radius > 0) or off (radius 0)
+	 *  When on, monsters within 'radius' moves of the player chase the player along a shortest path,
+	 *  	routing around walls and water, instead of stepping greedily towards the player
+	 *  	when within a 5:5 grid of the player.
+	 */
+	public void setPathfinding(int radius) {
+		this.flowField = (radius > 0) ? new FlowField(map, radius) : null;
+		if (flowField != null) flowField.compute(player.getPosY(), player.getPosX());
+		
+	}
+	
+	/*
+	 *  Getter methods (used by move sources and simulations):
+	 */
+	public Map getMap() {
+		return map;
+	}
+	
+	public Player getPlayer() {
+		return player;
+	}
+	
+	public List<Monster> getMonsters() {
+		return monsters.getAll();
+	}
+	
+	public List<Item> getItems() {
+		return items.getAll();
+	}
+	
+	public int getTurns() {
+		return turns;
+	}
+	
+	public int getDamageTaken() {
+		return damageTaken;
+	}
+	
+	public int getMonstersDefeated() {
+		return monstersDefeated;
+	}
+	
+	public int getItemsCollected() {
+		return itemsCollected;
+	}
+	
+	public java.util.Map<String, Integer> getDamageTakenByMonster() {
+		return Collections.unmodifiableMap(damageTakenByMonster);
+	}
+	
 	/*
 	 *  Update the map terrain elements at (x,y) with new symbol, c
 	 *  Used during load map file in GameEngine to override default map with terrain from file
 	 */
 	public void updateMapTerrain(int y, int x, char c) {
 		map.updateTerrain(y, x, c);
+		if (flowField != null) flowField.updateTile(y, x);
 		
 	}
 	
+	
 	/*
 	 *  Renders the map terrain with entities (called from runWorld loop):
+	 *  (Package-private, like the other per-turn methods below, so the benchmarks in bench can call it)
 	 */
-	private void renderWorld() {
+	void renderWorld() {
 		
-		int height = map.getHeight();
-		int width = map.getWidth();
+		if (headless) return;
+		
+		if (frameBuffer == null) {
+			frameBuffer = new FrameBuffer(frameHeight, frameWidth);
+			frameBuffer.setIncremental(incremental);
+			frameBuffer.setLineInput(lineInput);
+		}
+		int height = frameHeight;
+		int width = frameWidth;
+		
+		//Move the viewport to keep the player centred (within the map bounds).
+		//If the viewport moves, every cell in it needs to be redrawn:
+		int originY = clamp(player.getPosY() - height / 2, 0, map.getHeight() - height);
+		int originX = clamp(player.getPosX() - width / 2, 0, map.getWidth() - width);
+		if (originY != viewOriginY || originX != viewOriginX) {
+			viewOriginY = originY;
+			viewOriginX = originX;
+			frameBuffer.markAllDirty();
+		}
 		
 		//Renderable Interface is implemented on all objects which can be rendered on the map.
-		//Nested loop prints the relevant "Renderable" object one-by-one.
-		//The applicable object to print is selected by the getObjectToRender helper method.
-		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				Renderable objectToRender = getObjectToRender(i, j);
-				objectToRender.render();
+		//Nested loop draws the relevant "Renderable" object into the frame buffer one-by-one.
+		//The applicable object to draw is selected by the getObjectToRender helper method.
+		//(In incremental mode, only the cells marked dirty since the last frame are drawn.)
+		//Frame buffer cell (i,j) shows map position (viewOriginY + i, viewOriginX + j).
+		if (frameBuffer.needsFullRedraw()) {
+			for (int i = 0; i < height; i++) {
+				for (int j = 0; j < width; j++) {
+					frameBuffer.draw(i, j, getObjectToRender(viewOriginY + i, viewOriginX + j));
+				}
+			}
+		} else {
+			for (int c = frameBuffer.nextDirtyCell(0); c >= 0; c = frameBuffer.nextDirtyCell(c + 1)) {
+				int i = c / width;
+				int j = c % width;
+				frameBuffer.draw(i, j, getObjectToRender(viewOriginY + i, viewOriginX + j));
 			}
-			System.out.println();
 		}
 		
-		System.out.println();
+		//The completed frame is then printed with a single write:
+		frameBuffer.flush(out);
 		
 	}
 
+	/*
+	 *  Helper method to mark the map position (y,x) for redraw, if it is inside the viewport
+	 */
+	private void markDirty(int y, int x) {
+		if (frameBuffer != null) frameBuffer.markDirty(y - viewOriginY, x - viewOriginX);
+	}
+	
+	/*
+	 *  Helper method to have the next frame redrawn in full (eg. below a message)
+	 *  	(Until the first frame is rendered there is nothing to redraw.)
+	 */
+	private void invalidateFrame() {
+		if (frameBuffer != null) frameBuffer.invalidate();
+	}
+	
+	/*
+	 *  Helper method to limit value to the range [min, max]
+	 */
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(value, max));
+	}
+	
 	/*
 	 *  Helper method for renderWorld()
 	 *  Wherever there are two Renderable objects with the same (x,y) coordinates
 	 *  	the method returns the Renderable object with the top printing priority.
 	 */
-	private Renderable getObjectToRender(int y, int x) {
+	Renderable getObjectToRender(int y, int x) {
 		
 		//Renderable priority is given by the order in which the object types are examined, below:
 		//The first object to match (x,y) coordinates is returned
@@ -175,13 +635,11 @@ public class World {
 		
 		if(player.atPosition(x, y)) return player;
 		
-		for(Monster m: monsters) {
-			if(m.atPosition(x, y)) return m;
-		}
+		Monster m = monsterIndex.getFirstAt(x, y);
+		if(m != null) return m;
 		
-		for(Item i: items) {
-			if(i.atPosition(x, y)) return i;
-		}
+		Item i = itemIndex.getFirstAt(x, y);
+		if(i != null) return i;
 		
 		return map.getElement(y, x);
 		
@@ -195,7 +653,7 @@ public class World {
 		
 		if (player.getPosY() > 0 
 				&& map.isTraversable(player.getPosY() - 1, player.getPosX())) {
-			player.setPosY(player.getPosY() - 1);			
+			movePlayer(player.getPosX(), player.getPosY() - 1);			
 		}
 		
 	}
@@ -208,7 +666,7 @@ public class World {
 		
 		if (player.getPosY() < (map.getHeight() - 1) 
 				&& map.isTraversable(player.getPosY() + 1, player.getPosX())) {
-			player.setPosY(player.getPosY() + 1);			
+			movePlayer(player.getPosX(), player.getPosY() + 1);			
 		}
 		
 	}
@@ -221,7 +679,7 @@ public class World {
 		
 		if (player.getPosX() > 0 
 				&& map.isTraversable(player.getPosY(), player.getPosX() - 1)) {
-			player.setPosX(player.getPosX() - 1);
+			movePlayer(player.getPosX() - 1, player.getPosY());
 		}
 		
 	}
@@ -234,51 +692,88 @@ public class World {
 		
 		if (player.getPosX() < (map.getWidth() - 1) 
 				&& map.isTraversable(player.getPosY(), player.getPosX() + 1)) {
-			player.setPosX(player.getPosX() + 1);
+			movePlayer(player.getPosX() + 1, player.getPosY());
 		}
 		
 	}
 	
+	/*
+	 *  Helper method to move the player to (x,y), marking both grids for redraw
+	 */
+	private void movePlayer(int x, int y) {
+		
+		markDirty(player.getPosY(), player.getPosX());
+		player.setPosition(x, y);
+		markDirty(y, x);
+		map.focusOn(y, x);
+		if (flowField != null) flowField.setSource(y, x);
+		
+	}
+	
+	/*
+	 *  Helper method to move a monster to (x,y), updating the monster index
+	 *  	and marking both grids for redraw
+	 */
+	private void moveMonster(Monster m, int x, int y) {
+		
+		markDirty(m.getPosY(), m.getPosX());
+		monsterIndex.move(m, x, y);
+		markDirty(y, x);
+		
+	}
+	
 	/*
 	 *  Helper method to automate any monster movements (if required) in the runWorld() loop
 	 *  Called from runWorld loop
 	 */
-	private void moveMonsters() {
+	void moveMonsters() {
 
-		//Check every monster position in the <monsters> array:
-		for (Monster m: monsters) {
+		//Only monsters near the player can move, so only the monsters in the regions
+		//	around the player are checked (the others stay dormant until the player comes near):
+		activeMonsters.update(player.getPosY(), player.getPosX(),
+				(flowField != null) ? flowField.getRadius() : CHASE_DISTANCE);
+		
+		if (flowField != null) {
+			moveMonstersAlongPaths();
+			return;
+		}
+		
+		//Check every active monster position:
+		//	(The active monsters are the first getActiveCount() monsters in the monster store,
+		//	and positions are read straight from the store's arrays)
+		int playerX = player.getPosX();
+		int playerY = player.getPosY();
+		for (int i = 0; i < monsters.getActiveCount(); i++) {
+			
+			int x = monsters.getPosX(i);
+			int y = monsters.getPosY(i);
 			
 			//Check if that monster is within a 5:5 grid of the player:
-			if ((Math.abs(m.getPosX() - player.getPosX()) <= 2) 
-					&& (Math.abs(m.getPosY() - player.getPosY()) <= 2)) {
+			if ((Math.abs(x - playerX) <= CHASE_DISTANCE) && (Math.abs(y - playerY) <= CHASE_DISTANCE)) {
 				
 				//If monster is within 5:5 range, move monster accordingly: 
 				
 				//If player is to the LEFT of the monster:
-				if (m.getPosX() > player.getPosX() 
-						&& map.isTraversable(m.getPosY(), m.getPosX() - 1)) { 
-					m.setPosX(m.getPosX() - 1);
+				if (x > playerX && map.isTraversable(y, x - 1)) { 
+					moveMonster(monsters.getMonster(i), x - 1, y);
 					continue;					
 				}
 				
 				//If player is to the RIGHT of the monster:
-				if (m.getPosX() < player.getPosX() 
-						&& map.isTraversable(m.getPosY(), m.getPosX() + 1)) { 
-					m.setPosX(m.getPosX() + 1);
+				if (x < playerX && map.isTraversable(y, x + 1)) { 
+					moveMonster(monsters.getMonster(i), x + 1, y);
 					continue;					
 				}				
 				
 				//If player is ABOVE the monster:
-				if (m.getPosY() > player.getPosY() 
-						&& map.isTraversable(m.getPosY() - 1, m.getPosX())) { 
-					m.setPosY(m.getPosY() - 1);
+				if (y > playerY && map.isTraversable(y - 1, x)) { 
+					moveMonster(monsters.getMonster(i), x, y - 1);
 					continue;					
 				}		
 				
 				//If player is BELOW the monster:
-				if (m.getPosY() < player.getPosY() 
-						&& map.isTraversable(m.getPosY() + 1, m.getPosX())) { 
-					m.setPosY(m.getPosY() + 1);
+				if (y < playerY && map.isTraversable(y + 1, x)) { 
+					moveMonster(monsters.getMonster(i), x, y + 1);
 					continue;					
 				}		
 				
@@ -288,34 +783,76 @@ public class World {
 				
 	}
 	
+	/*
+	 *  Helper method to move monsters in pathfinding mode
+	 *  The distance field from the player is shared by every monster: each monster within range
+	 *  	steps to the neighbouring grid one move closer to the player.
+	 *  The field is repaired as the player moves and the terrain changes (see movePlayer and
+	 *  	updateMapTerrain), so it is only recomputed here if the player was placed elsewhere.
+	 */
+	private void moveMonstersAlongPaths() {
+		
+		flowField.setSource(player.getPosY(), player.getPosX());
+		
+		for (int i = 0; i < monsters.getActiveCount(); i++) {
+			int x = monsters.getPosX(i);
+			int y = monsters.getPosY(i);
+			int direction = flowField.getStepTowardsSource(y, x);
+			if (direction >= 0) {
+				moveMonster(monsters.getMonster(i), x + FlowField.getStepX(direction), y + FlowField.getStepY(direction));
+			}
+		}
+		
+	}
+	
 	/*
 	 *  Method to check if player is on same grid as any monster, and if so, enter battle
 	 *  Called from runWorld loop
 	 *  Returns 'true' if player loses battle (which then exits runWorld), otherwise returns false
 	 */
-	private boolean checkClashAndBattle() {
+	boolean checkClashAndBattle() {
 				
-		//Check every monster position in the <monsters> array:
-		for (Monster m : monsters) {
+		boolean lost = false;
+		
+		//Look up the monsters on the player's grid in the monster index, and battle each:
+		//	(Monsters which lose are removed from the monster store straight away, see runBattleLoop)
+		for (Monster m : monsterIndex.getAllAt(player.getPosX(), player.getPosY())) {
 			
-			//If monster position == player position, run the battle loop:
-			if (player.getPosX() == m.getPosX() && player.getPosY() == m.getPosY()) {
-				
-				runBattleLoop(m);
-				
-				//Before each battle with next monster, check if player health is still > 0. 
-				//If not > 0, return true (which will exit the world loop):
-				if (player.isDefeated()) return true;
-				
+			//(In headless mode no messages are printed, so the battle is resolved in one step)
+			BATTLES.increment();
+			BattleEvent battleEvent = null;
+			if (FlightRecorder.isInitialized()) {
+				battleEvent = new BattleEvent();
+				battleEvent.begin();
+			}
+			int damageBefore = damageTaken;
+			int rounds = headless ? resolveBattle(m) : runBattleLoop(m);
+			if (battleEvent != null && battleEvent.shouldCommit()) {
+				battleEvent.monster = m.getName();
+				battleEvent.rounds = rounds;
+				battleEvent.playerWon = m.isDefeated();
+				battleEvent.damageTaken = damageTaken - damageBefore;
+				battleEvent.playerHealth = player.getCurrentHealth();
+				battleEvent.narrated = !headless;
+				battleEvent.commit();
+			}
+			
+			//Before each battle with next monster, check if player health is still > 0. 
+			//If not > 0, return true (which will exit the world loop):
+			if (player.isDefeated()) {
+				lost = true;
+				break;
 			}
+			
 		}
 		
-		//Permanently delete all monsters that lost in battle:
-		for (Monster m : monstersToDelete) monsters.remove(m);		
-		monstersToDelete.clear();
+		//Remove all monsters that lost in battle from the player's grid in the index:
+		if (monsterIndex.removeAllAt(player.getPosX(), player.getPosY(), m -> !monsters.contains(m))) {
+			markDirty(player.getPosY(), player.getPosX());
+		}
 		
 		//Default return false (ie. player is still alive and game continues)
-		return false;
+		return lost;
 		
 	}
 	
@@ -325,58 +862,69 @@ public class World {
 	 *  Returns 'true' if player collects warp stone (which then exits runWorld), 
 	 *  	otherwise returns false
 	 */
-	private boolean checkItemsAndCollect() {
+	boolean checkItemsAndCollect() {
 				
-		//Check every item position in the <item> array:
-		for (Item i : items) {
+		//Look up the items on the player's grid in the item index, and assess each item type:
+		for (Item i : itemIndex.getAllAt(player.getPosX(), player.getPosY())) {
 			
-			//If item position = player position, assess item type and proceed accordingly:
-			if (player.getPosX() == i.getPosX() && player.getPosY() == i.getPosY()) {
-				
-				char symbol = i.getSymbol();
+			char symbol = i.getSymbol();
+			
+			switch (symbol) {
+			
+				case '+': //Item = Healing Item
+					
+					player.toFullHealth();
+					out.println("Healed!");
+					invalidateFrame(); //Next frame is redrawn in full, below the message
+					items.remove(i);
+					itemsCollected++;
+					break;
 				
-				switch (symbol) {
+				case '^': //Item = Damage Perk
+					
+					player.incrementBonus();
+					out.println("Attack up!");
+					invalidateFrame(); //Next frame is redrawn in full, below the message
+					items.remove(i);
+					itemsCollected++;
+					break;	
 				
-					case '+': //Item = Healing Item
-						
-						player.toFullHealth();
-						System.out.println("Healed!");
-						itemsToDelete.add(i);
-						break;
+				case '@': //Item = Warp Stone
 					
-					case '^': //Item = Damage Perk
-						
-						player.incrementBonus();
-						System.out.println("Attack up!");
-						itemsToDelete.add(i);
-						break;	
+					player.incrementLevel();
+					itemsCollected++;
+					out.println("World complete! (You leveled up!)");
+					out.println();
+					removeCollectedItems();
+					return true; //Return true (exit runWorld) if player collects warp stone
 					
-					case '@': //Item = Warp Stone
-						
-						player.incrementLevel();
-						System.out.println("World complete! (You leveled up!)");
-						System.out.println();
-						return true; //Return true (exit runWorld) if player collects warp stone
-						
-					default:
-						
-						break;
-						
-				}
+				default:
+					
+					break;
 					
 			}
 			
 		}
 		
-		//Permanently delete all items that were collected:
-		for (Item i : itemsToDelete) items.remove(i);		
-		itemsToDelete.clear();
+		removeCollectedItems();
 		
 		//Default return false (ie. warp stone was not collected and game continues)
 		return false;
 		
 	}
 	
+	/*
+	 *  Helper method to remove all items that were collected (already removed from the item store)
+	 *  	from the player's grid in the index. Called from checkItemsAndCollect()
+	 */
+	private void removeCollectedItems() {
+		
+		if (itemIndex.removeAllAt(player.getPosX(), player.getPosY(), i -> !items.contains(i))) {
+			markDirty(player.getPosY(), player.getPosX());
+		}
+		
+	}
+	
 	/*
 	 *  Method to check if any entities remaining
 	 *  Called from runWorld loop
@@ -396,24 +944,28 @@ public class World {
 	/*
 	 *  Battle loop called if monster position = player position
 	 *  Called bycheckClashandBattle()
+	 *  Returns the number of rounds (attacks made by the player)
+	 *  (Package-private, like resolveBattle(), so Checks can compare the two)
 	 */
-	private void runBattleLoop(Monster m) {
+	int runBattleLoop(Monster m) {
 
 		displayEncounterMsg(m);
 		
 		boolean inBattle = true;
+		int rounds = 0;
 
 		while(inBattle) {
 			
 			displayCurrentHealth(m);
 			
 			playerAttacks(m);
+			rounds++;
 			
 			//Check if monster alive, if not, process accordingly:
 			if (m.isDefeated()) {
-				System.out.println(player.getName() + " wins!");
-				System.out.println();
-				monstersToDelete.add(m); //Dead monster added to array to be deleted at end of turn
+				out.println(player.getName() + " wins!");
+				out.println();
+				removeDefeatedMonster(m);
 				inBattle = false;
 				break;
 			}
@@ -422,18 +974,78 @@ public class World {
 			
 			//Check if player alive, if not, process accordingly:
 			if (player.isDefeated()) {
-				System.out.println(m.getName() + " wins!");
-				System.out.println();
+				out.println(m.getName() + " wins!");
+				out.println();
 				inBattle = false;
 				break;
 			}
 			
-			System.out.println();
+			out.println();
 			
 		}
+		
+		return rounds;
 				
 	}
 	
+	/*
+	 *  Resolves a battle in one step, with the same result as runBattleLoop() but no messages
+	 *  Called by checkClashAndBattle() in headless mode
+	 *  The player attacks first, and each side does the same damage every round, so:
+	 *  	- the player needs ceil(monster health / player damage) attacks to win,
+	 *  		and the monster gets one attack fewer before it is defeated;
+	 *  	- if the player cannot survive that many attacks, the monster wins after
+	 *  		ceil(player health / monster damage) attacks, and the player gets the same
+	 *  		number of attacks.
+	 *  Returns the number of rounds (attacks made by the player)
+	 */
+	int resolveBattle(Monster m) {
+		
+		long playerHealth = player.getCurrentHealth();
+		long monsterHealth = m.getCurrentHealth();
+		long playerDamage = player.getAttackDamage();
+		long monsterDamage = m.getAttackDamage();
+		
+		long playerAttacks = ceilDiv(monsterHealth, playerDamage);
+		long monsterAttacks = playerAttacks - 1;
+		if (monsterAttacks > 0) {
+			//Attacks the monster needs to defeat the player (if it can at all):
+			long needed = (monsterDamage > 0) ? ceilDiv(playerHealth, monsterDamage)
+					: ((playerHealth - monsterDamage <= 0) ? 1 : Long.MAX_VALUE);
+			if (needed <= monsterAttacks) {
+				monsterAttacks = needed;
+				playerAttacks = needed;
+			}
+		}
+		
+		m.setCurrentHealth((int) (monsterHealth - playerAttacks * playerDamage));
+		player.setCurrentHealth((int) (playerHealth - monsterAttacks * monsterDamage));
+		if (monsterAttacks > 0) recordDamageTaken(m, (int) (monsterAttacks * monsterDamage));
+		
+		if (m.isDefeated()) removeDefeatedMonster(m);
+		return (int) playerAttacks;
+		
+	}
+	
+	/*
+	 *  Helper method to return ceil(a / b) for b > 0 (or 1 if a <= 0: each side attacks at least once)
+	 */
+	private static long ceilDiv(long a, long b) {
+		return (a <= 0) ? 1 : (a + b - 1) / b;
+	}
+	
+	/*
+	 *  Helper method to delete a monster which lost in battle
+	 *  	(It is dropped from the monster index at the end of the turn, see checkClashAndBattle())
+	 */
+	private void removeDefeatedMonster(Monster m) {
+		
+		activeMonsters.remove(m);
+		monsters.remove(m);
+		monstersDefeated++;
+		
+	}
+	
 	/*
 	 *  Helper method to decrement monster health. Called from runBattleLoop()
 	 */
@@ -441,7 +1053,7 @@ public class World {
 		
 		int newHealth = m.getCurrentHealth() - player.getAttackDamage();
 		m.setCurrentHealth(newHealth);
-		System.out.println(player.getName() + " attacks " + m.getName() 
+		out.println(player.getName() + " attacks " + m.getName() 
 			+ " for " + player.getAttackDamage() + " damage.");
 	
 	}
@@ -453,17 +1065,29 @@ public class World {
 		
 		int newHealth = player.getCurrentHealth() - m.getAttackDamage();
 		player.setCurrentHealth(newHealth);
-		System.out.println(m.getName() + " attacks " + player.getName() 
+		recordDamageTaken(m, m.getAttackDamage());
+		out.println(m.getName() + " attacks " + player.getName() 
 			+ " for " + m.getAttackDamage() + " damage.");
 		
 	}
 	
+	/*
+	 *  Helper method to add damage dealt to the player by a monster to the run statistics
+	 */
+	private void recordDamageTaken(Monster m, int damage) {
+		
+		damageTaken += damage;
+		Integer total = damageTakenByMonster.get(m.getName());
+		damageTakenByMonster.put(m.getName(), (total == null) ? damage : total + damage);
+		
+	}
+	
 	/*
 	 *  Displays return home message from MapLoop to main GameLoop.
 	 */
 	private void displayHomeMapMsg() {
-		System.out.println("Returning home...");
-		System.out.println();
+		out.println("Returning home...");
+		out.println();
 		
 	}
 	
@@ -471,8 +1095,9 @@ public class World {
 	 *  Displays encounter message used at commencement of BattleLoop.
 	 */
 	private void displayEncounterMsg(Monster m) {
-		System.out.println(player.getName() + " encountered a " + m.getName() + "!");
-		System.out.println();
+		invalidateFrame(); //Next frame is redrawn in full, below the battle messages
+		out.println(player.getName() + " encountered a " + m.getName() + "!");
+		out.println();
 		
 	}
 	
@@ -480,7 +1105,7 @@ public class World {
 	 *  Displays current health of player and monster used during BattleLoop.
 	 */
 	private void displayCurrentHealth(Monster m) {
-		System.out.println(player.getName() + " " + player.getCurrentHealth() + "/" + player.getMaxHealth()
+		out.println(player.getName() + " " + player.getCurrentHealth() + "/" + player.getMaxHealth()
 				+ " | "
 				+ m.getName() + " " + m.getCurrentHealth() + "/" + m.getMaxHealth());
 		